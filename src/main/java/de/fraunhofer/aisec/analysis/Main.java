@@ -4,8 +4,10 @@ package de.fraunhofer.aisec.analysis;
 import de.fraunhofer.aisec.analysis.server.AnalysisServer;
 import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
 import de.fraunhofer.aisec.analysis.structures.Finding;
+import de.fraunhofer.aisec.analysis.structures.RuleProfile;
 import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
 import de.fraunhofer.aisec.analysis.structures.TypestateMode;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +21,7 @@ import java.io.PrintWriter;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +32,9 @@ import java.util.concurrent.TimeUnit;
 public class Main implements Callable<Integer> {
 	private static final Logger log = LoggerFactory.getLogger(Main.class);
 
+	/** Name of the file containing the per-rule profiles, written to the directory of the findings. */
+	private static final String PROFILE_FILE = "profile.json";
+
 	@CommandLine.ArgGroup(exclusive = true, multiplicity = "1", heading = "Execution mode\n")
 	private ExecutionMode executionMode;
 
@@ -76,6 +82,14 @@ public class Main implements Callable<Integer> {
 						.launchConsole(executionMode.tui)
 						.typestateAnalysis(analysisMode.tsMode)
 						.disableGoodFindings(disableGoodFindings)
+						.maxContextsPerRule(analysisMode.maxContextsPerRule)
+						.ruleEvaluationThreads(analysisMode.ruleEvaluationThreads)
+						.ruleTimeout(analysisMode.ruleTimeout)
+						.maxEogNodesPerContext(analysisMode.maxEogNodesPerContext)
+						.maxWpdsRulesPerContext(analysisMode.maxWpdsRulesPerContext)
+						.orderEvaluationThreads(analysisMode.orderEvaluationThreads)
+						.wpdsSliceDepth(analysisMode.wpdsSliceDepth)
+						.wpdsThreads(analysisMode.wpdsThreads)
 						.analyzeIncludes(translationSettings.analyzeIncludes)
 						.includePath(translationSettings.includesPath)
 						.markFiles(markFolderName.getAbsolutePath())
@@ -93,6 +107,7 @@ public class Main implements Callable<Integer> {
 			var findings = ctx.getFindings();
 
 			writeFindings(findings);
+			writeProfile(ctx.getRuleProfiles());
 
 			if (executionMode.cli) {
 				// Return code based on the existence of violations
@@ -106,6 +121,29 @@ public class Main implements Callable<Integer> {
 		return 0;
 	}
 
+	/**
+	 * Writes the per-rule profiles as JSON next to the findings file.
+	 *
+	 * @param profiles
+	 */
+	private void writeProfile(List<RuleProfile> profiles) {
+		if (outputFile.equals("-")) {
+			// findings go to stdout, do not mix them with the profile
+			return;
+		}
+		JSONArray jProfiles = new JSONArray();
+		for (RuleProfile p : profiles) {
+			jProfiles.put(p.toJson());
+		}
+		File profileFile = new File(new File(outputFile).getAbsoluteFile().getParentFile(), PROFILE_FILE);
+		try (PrintWriter out = new PrintWriter(profileFile)) {
+			out.println(jProfiles.toString(2));
+		}
+		catch (FileNotFoundException e) {
+			log.warn("Could not write rule profile: {}", e.getMessage());
+		}
+	}
+
 	private void writeFindings(Set<Finding> findings) {
 		StringBuilder sb = new StringBuilder("[");
 		Iterator<Finding> it = findings.iterator();
@@ -156,6 +194,30 @@ class AnalysisMode {
 	@Option(names = "--typestate", paramLabel = "<NFA|WPDS>", defaultValue = "NFA", type = TypestateMode.class, description = "Typestate analysis mode\nNFA:  Non-deterministic finite automaton (faster, intraprocedural)\nWPDS: Weighted pushdown system (slower, interprocedural)")
 	//@CommandLine.ArgGroup(exclusive = true, multiplicity = "1", heading = "Typestate Analysis\n")
 	protected TypestateMode tsMode = TypestateMode.NFA;
+
+	@Option(names = "--max-contexts", paramLabel = "<count>", defaultValue = "50000", description = "Maximum number of evaluation contexts per rule. Rules exceeding this limit are evaluated incompletely. 0 for no limit.", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int maxContextsPerRule = 50_000;
+
+	@Option(names = "--rule-threads", paramLabel = "<count>", defaultValue = "1", description = "Number of MARK rules evaluated in parallel.", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int ruleEvaluationThreads = 1;
+
+	@Option(names = "--rule-timeout", paramLabel = "<seconds>", defaultValue = "600", description = "Maximum time for evaluating a single rule, 0 for no limit. Rules exceeding it are reported as inconclusive.", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected long ruleTimeout = 600;
+
+	@Option(names = "--max-eog-nodes", paramLabel = "<count>", defaultValue = "1000000", description = "Maximum number of EOG nodes visited per order evaluation, 0 for no limit.", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected long maxEogNodesPerContext = 1_000_000;
+
+	@Option(names = "--max-wpds-rules", paramLabel = "<count>", defaultValue = "5000000", description = "Maximum number of WPDS rules per typestate analysis, 0 for no limit.", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected long maxWpdsRulesPerContext = 5_000_000;
+
+	@Option(names = "--order-threads", paramLabel = "<count>", defaultValue = "1", description = "Number of functions evaluated in parallel when checking the order of a rule.", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int orderEvaluationThreads = 1;
+
+	@Option(names = "--wpds-slice-depth", paramLabel = "<calls>", defaultValue = "-1", description = "Maximum call depth around typestate-relevant calls included in the WPDS, -1 for no limit.", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int wpdsSliceDepth = -1;
+
+	@Option(names = "--wpds-threads", paramLabel = "<count>", defaultValue = "1", description = "Number of functions translated into WPDS rules in parallel.", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int wpdsThreads = 1;
 }
 
 class TranslationSettings {
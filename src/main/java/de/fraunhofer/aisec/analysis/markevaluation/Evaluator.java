@@ -3,14 +3,17 @@ package de.fraunhofer.aisec.analysis.markevaluation;
 
 import com.google.common.collect.Lists;
 import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
+import de.fraunhofer.aisec.analysis.structures.BudgetExceededException;
 import de.fraunhofer.aisec.analysis.structures.CPGInstanceContext;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
+import de.fraunhofer.aisec.analysis.structures.EvaluationBudget;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.MarkContext;
 import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
 import de.fraunhofer.aisec.analysis.structures.MarkIntermediateResult;
 import de.fraunhofer.aisec.analysis.structures.Pair;
+import de.fraunhofer.aisec.analysis.structures.RuleProfile;
 import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
 import de.fraunhofer.aisec.analysis.utils.Utils;
 import de.fraunhofer.aisec.cpg.TranslationResult;
@@ -22,6 +25,7 @@ import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
 import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import de.fraunhofer.aisec.mark.markDsl.AliasedEntityExpression;
+import de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration;
 import de.fraunhofer.aisec.mark.markDsl.OpStatement;
 import de.fraunhofer.aisec.mark.markDsl.RuleStatement;
 import de.fraunhofer.aisec.markmodel.MEntity;
@@ -36,12 +40,18 @@ import org.slf4j.LoggerFactory;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -52,6 +62,9 @@ import java.util.stream.Collectors;
 public class Evaluator {
 	private static final Logger log = LoggerFactory.getLogger(Evaluator.class);
 
+	/** Number of rules listed in the profiling summary. */
+	private static final int TOP_N_PROFILES = 10;
+
 	@NonNull
 	private final Mark markModel;
 
@@ -91,6 +104,7 @@ public class Evaluator {
 			b = new Benchmark(this.getClass(), "Evaluate rules");
 			evaluateRules(ctx, traversal.getCrymlinTraversal());
 			b.stop();
+			logSlowestRules(ctx, TOP_N_PROFILES);
 
 			bOuter.stop();
 
@@ -103,6 +117,7 @@ public class Evaluator {
 		finally {
 			// reset everything attached to this model
 			this.markModel.reset();
+			ctx.shutdownWorkers();
 		}
 	}
 
@@ -116,6 +131,17 @@ public class Evaluator {
 	 */
 	private void assignCallVerticesToOps(@NonNull AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlinTraversal) {
 		Benchmark b = new Benchmark(this.getClass(), "Precalculating matching nodes");
+		// look up the calls of all op statements at once
+		List<FunctionDeclaration> calls = new ArrayList<>();
+		for (MEntity ent : markModel.getEntities()) {
+			for (MOp op : ent.getOps()) {
+				for (OpStatement opStmt : op.getStatements()) {
+					calls.add(opStmt.getCall());
+				}
+			}
+		}
+		Map<FunctionDeclaration, Set<Vertex>> callVertices = CrymlinQueryWrapper.getVerticesForFunctionDeclarations(ctx.getDatabase(), calls, crymlinTraversal);
+
 		// iterate over all entities and precalculate:
 		// - call statements to vertices
 		for (MEntity ent : markModel.getEntities()) {
@@ -125,7 +151,7 @@ public class Evaluator {
 				log.debug("Looking for call statements for {}", op.getName());
 				int numMatches = 0;
 				for (OpStatement opStmt : op.getStatements()) {
-					Set<Vertex> temp = CrymlinQueryWrapper.getVerticesForFunctionDeclaration(ctx.getDatabase(), opStmt.getCall(), crymlinTraversal);
+					Set<Vertex> temp = callVertices.get(opStmt.getCall());
 					log.debug(
 						"Call {}({}) of op {} found {} times",
 						opStmt.getCall().getName(),
@@ -146,58 +172,167 @@ public class Evaluator {
 
 	/**
 	 * Evaluates all rules and creates findings.
+	 * <p>
+	 * Rules without any matching CPG node are skipped, the others are evaluated most expensive first, using
+	 * {@link ServerConfiguration#ruleEvaluationThreads} workers. Rules whose evaluation fails are reported as inconclusive.
 	 *
 	 * @param ctx              the result/analysis context
 	 * @param crymlinTraversal connection to the db
 	 */
 	private void evaluateRules(AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlinTraversal) {
+		List<RuleScheduler.ScheduledRule> schedule = new RuleScheduler(this.markModel, config.typestateAnalysis).schedule();
+		log.info("Evaluating {} of {} rules", schedule.size(), this.markModel.getRules().size());
 
-		for (MRule rule : this.markModel.getRules()) {
-			log.info("checking rule {}", rule.getName());
-
-			/* Evaluate "using" part and collect the instances of MARK entities, as well as the potential vertex representing the base object variables. */
-			List<List<Pair<String, Vertex>>> entities = findInstancesForEntities(rule);
+		if (config.ruleEvaluationThreads <= 1 || schedule.size() <= 1) {
+			for (RuleScheduler.ScheduledRule scheduled : schedule) {
+				evaluateRule(scheduled.getRule(), ctx, crymlinTraversal);
+			}
+			return;
+		}
 
-			// skip evaluation if there are no cpg-nodes which would be used in this evaluation
-			if (!entities.isEmpty()) {
-				boolean hasCPGNodes = false;
-				outer: for (Map.Entry<String, Pair<String, MEntity>> entity : rule.getEntityReferences().entrySet()) {
-					if (entity.getValue() == null || entity.getValue().getValue1() == null) {
-						log.warn("Rule {} references an unknown entity {}", rule.getName(), entity.getKey());
-						break;
-					}
-					for (MOp op : entity.getValue().getValue1().getOps()) {
-						if (!op.getAllVertices().isEmpty()) {
-							hasCPGNodes = true;
-							break outer;
-						}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(config.ruleEvaluationThreads, schedule.size()));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (RuleScheduler.ScheduledRule scheduled : schedule) {
+				futures.add(pool.submit(() -> {
+					// each worker uses its own connection to the db
+					try (TraversalConnection traversal = new TraversalConnection(ctx.getDatabase())) {
+						evaluateRule(scheduled.getRule(), ctx, traversal.getCrymlinTraversal());
 					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
 				}
-				if (!hasCPGNodes) {
-					log.warn("Rule {} does not have any corresponding CPG-nodes. Skipping", rule.getName());
-					continue;
+				catch (ExecutionException e) {
+					reportFailedRule(schedule.get(i).getRule(), ctx, e.getCause());
 				}
 			}
+		}
+		catch (InterruptedException e) {
+			log.warn("Interrupted while evaluating rules");
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Evaluates a single rule and adds its findings and its profile to the analysis context.
+	 *
+	 * @param rule             the rule to evaluate
+	 * @param ctx              the result/analysis context
+	 * @param crymlinTraversal connection to the db
+	 */
+	private void evaluateRule(@NonNull MRule rule, AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlinTraversal) {
+		RuleProfile profile = new RuleProfile(rule.getName());
+		long start = System.nanoTime();
+		try {
+			evaluateRule(rule, ctx, crymlinTraversal, profile);
+		}
+		catch (RuntimeException e) {
+			profile.setInconclusive(true);
+			reportFailedRule(rule, ctx, e);
+		}
+		finally {
+			profile.setWallTimeNanos(System.nanoTime() - start);
+			ctx.getRuleProfiles().add(profile);
+		}
+	}
+
+	/**
+	 * Reports a rule whose evaluation failed as inconclusive, so that the failure is not mistaken for a rule without findings. Findings which
+	 * have already been created during evaluation are kept.
+	 *
+	 * @param rule  the rule which failed
+	 * @param ctx   the result/analysis context
+	 * @param cause the reason of the failure
+	 */
+	private void reportFailedRule(@NonNull MRule rule, AnalysisContext ctx, Throwable cause) {
+		log.error("Evaluation of rule {} failed, reporting it as inconclusive", rule.getName(), cause);
+		ctx.getFindings()
+				.add(Finding.inconclusive("Rule " + rule.getName() + " inconclusive: evaluation failed: " + cause, null, rule.getErrorMessage(), List.of()));
+	}
+
+	private void evaluateRule(@NonNull MRule rule, AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlinTraversal, @NonNull RuleProfile profile) {
+		log.info("checking rule {}", rule.getName());
+
+		/* Evaluate "using" part and collect the instances of MARK entities, as well as the potential vertex representing the base object variables. */
+		List<List<Pair<String, Vertex>>> entities = findInstancesForEntities(rule);
 
-			/* Create evaluation context. */
-			// Generate all combinations of instances for each entity.
-			// We take the n-th cartesian product of all _possible_ program variables that correspond to Mark entities.
-			// A CPGInstanceContext is a specific interpretation of a Mark rule that needs to be evaluated.
-			MarkContextHolder markCtxHolder = createMarkContext(entities);
+		/* Create evaluation context. */
+		// Generate all combinations of instances for each entity.
+		// We take the n-th cartesian product of all _possible_ program variables that correspond to Mark entities.
+		// A CPGInstanceContext is a specific interpretation of a Mark rule that needs to be evaluated.
+		EvaluationBudget budget = new EvaluationBudget(TimeUnit.SECONDS.toMillis(config.ruleTimeout), config.maxEogNodesPerContext, config.maxWpdsRulesPerContext);
+		MarkContextHolder markCtxHolder = createMarkContext(entities, config.maxContextsPerRule, budget, profile);
 
-			ExpressionEvaluator ee = new ExpressionEvaluator(this.markModel, rule, ctx, config, crymlinTraversal, markCtxHolder);
+		ExpressionEvaluator ee = new ExpressionEvaluator(this.markModel, rule, ctx, config, crymlinTraversal, markCtxHolder);
 
+		Map<Integer, MarkIntermediateResult> result;
+		try {
 			// Evaluate "when" part, if present (will possibly remove entries from markCtxhHlder)
 			evaluateWhen(rule, markCtxHolder, ee);
 
+			if (markCtxHolder.getAllContexts().isEmpty()) {
+				log.info("Precondition of {} does not hold for any combination of instances, skipping ensure", rule.getName());
+				return;
+			}
+
 			/* Evaluate "ensure" part */
-			Map<Integer, MarkIntermediateResult> result = ee.evaluateExpression(rule.getStatement().getEnsure().getExp());
+			result = ee.evaluateExpression(rule.getStatement().getEnsure().getExp());
+		}
+		catch (BudgetExceededException e) {
+			// findings which have already been created during evaluation are kept
+			log.warn("Evaluation of rule {} cancelled, reporting it as inconclusive: {}", rule.getName(), e.getMessage());
+			profile.setInconclusive(true);
+			ctx.getFindings()
+					.add(Finding.inconclusive("Rule " + rule.getName() + " inconclusive: " + e.getMessage(), null, rule.getErrorMessage(), List.of()));
+			return;
+		}
+		finally {
+			profile.setContexts(markCtxHolder.getCreatedContexts(), markCtxHolder.getAllContexts().size());
+			profile.addEogVertices(budget.getTotalEogNodes());
+		}
 
-			/* Get findings from "result" */
-			Collection<Finding> findings = getFindings(result, markCtxHolder, rule);
+		/* Get findings from "result" */
+		Collection<Finding> findings = getFindings(result, markCtxHolder, rule);
+		if (!markCtxHolder.getInconclusiveContexts().isEmpty()) {
+			profile.setInconclusive(true);
+		}
 
-			log.info("Got {} findings: {}", findings.size(), findings.stream().map(f -> f.getLogMsg()).collect(Collectors.toList()));
-			ctx.getFindings().addAll(findings);
+		if (markCtxHolder.isFanOutLimitReached()) {
+			log.warn("Rule {} exceeds the maximum number of {} contexts (see --max-contexts). Only part of the program was checked, results for this rule are incomplete.",
+				rule.getName(), markCtxHolder.getMaxContexts());
+		}
+		if (markCtxHolder.getDeduplicatedContexts() > 0) {
+			log.debug("Rule {}: skipped {} equivalent copies of contexts", rule.getName(), markCtxHolder.getDeduplicatedContexts());
+		}
+
+		log.info("Got {} findings: {}", findings.size(), findings.stream().map(f -> f.getLogMsg()).collect(Collectors.toList()));
+		ctx.getFindings().addAll(findings);
+	}
+
+	/**
+	 * Logs the <code>n</code> rules which took the longest to evaluate.
+	 *
+	 * @param ctx
+	 * @param n
+	 */
+	private void logSlowestRules(@NonNull AnalysisContext ctx, int n) {
+		List<RuleProfile> slowest = ctx.getRuleProfiles()
+				.stream()
+				.sorted(Comparator.comparingLong(RuleProfile::getWallTimeMillis).reversed())
+				.limit(n)
+				.collect(Collectors.toList());
+		if (slowest.isEmpty()) {
+			return;
+		}
+		log.info("Top {} rules by evaluation time:", slowest.size());
+		for (RuleProfile p : slowest) {
+			log.info("  {}", p);
 		}
 	}
 
@@ -209,7 +344,22 @@ public class Evaluator {
 			// the value of the result should always be boolean, as this should be the result of the topmost expression
 			int markCtx = entry.getKey();
 			Object evaluationResultUb = ConstantValue.unbox(entry.getValue());
-			if (evaluationResultUb instanceof Boolean) {
+			String inconclusiveReason = markCtxHolder.getInconclusiveContexts().get(markCtx);
+			if (inconclusiveReason != null) {
+				MarkContext c = markCtxHolder.getContext(markCtx);
+				List<Region> ranges = new ArrayList<>();
+				URI currentFile = null;
+				for (Vertex v : c.getInstanceContext().getMarkInstanceVertices()) {
+					if (v != null) {
+						ranges.add(Utils.getRegionByVertex(v));
+						currentFile = CrymlinQueryWrapper.getFileLocation(v);
+					}
+				}
+				if (ranges.isEmpty()) {
+					ranges.add(new Region());
+				}
+				findings.add(Finding.inconclusive("Rule " + rule.getName() + " inconclusive: " + inconclusiveReason, currentFile, rule.getErrorMessage(), ranges));
+			} else if (evaluationResultUb instanceof Boolean) {
 				ConstantValue evalResult = (ConstantValue) entry.getValue();
 				/*
 				 * if we did not add a finding during expression evaluation (e.g., as it is the case in the order evaluation), add a new finding which references all
@@ -323,8 +473,10 @@ public class Evaluator {
 		markCtxHolder.setCreateFindingsDuringEvaluation(true);
 	}
 
-	private MarkContextHolder createMarkContext(List<List<Pair<String, Vertex>>> entities) {
-		MarkContextHolder context = new MarkContextHolder();
+	private MarkContextHolder createMarkContext(List<List<Pair<String, Vertex>>> entities, int maxContexts, @NonNull EvaluationBudget budget,
+			@NonNull RuleProfile profile) {
+		MarkContextHolder context = new MarkContextHolder(maxContexts, budget, profile);
+		// the cartesian product is created lazily, so we only build the contexts up to the limit
 		for (List<Pair<String, Vertex>> list : Lists.cartesianProduct(entities)) {
 			CPGInstanceContext instanceCtx = new CPGInstanceContext();
 			for (Pair<String, Vertex> p : list) {
@@ -332,7 +484,9 @@ public class Evaluator {
 				Vertex v = p.getValue1();
 				instanceCtx.putMarkInstance(markInstanceName, v);
 			}
-			context.addInitialInstanceContext(instanceCtx);
+			if (!context.addInitialInstanceContext(instanceCtx)) {
+				break;
+			}
 		}
 		return context;
 	}
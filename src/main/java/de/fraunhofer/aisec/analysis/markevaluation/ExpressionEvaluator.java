@@ -2,12 +2,12 @@
 package de.fraunhofer.aisec.analysis.markevaluation;
 
 import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
+import de.fraunhofer.aisec.analysis.structures.BudgetExceededException;
 import de.fraunhofer.aisec.analysis.structures.CPGVertexWithValue;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.ListValue;
-import de.fraunhofer.aisec.analysis.structures.MarkContext;
 import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
 import de.fraunhofer.aisec.analysis.structures.MarkIntermediateResult;
 import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
@@ -16,6 +16,7 @@ import de.fraunhofer.aisec.cpg.sarif.Region;
 import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
 import de.fraunhofer.aisec.crymlin.builtin.Builtin;
 import de.fraunhofer.aisec.crymlin.builtin.BuiltinRegistry;
+import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import de.fraunhofer.aisec.mark.markDsl.Argument;
 import de.fraunhofer.aisec.mark.markDsl.BooleanLiteral;
@@ -41,13 +42,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.Pattern;
 
 public class ExpressionEvaluator {
@@ -92,6 +98,8 @@ public class ExpressionEvaluator {
 			return markContextHolder.generateNullResult();
 		}
 
+		markContextHolder.getBudget().checkTime();
+
 		// from lowest to highest operator precedence
 		log.debug("evaluating {}: {}", expr.getClass().getSimpleName(), ExpressionHelper.exprToString(expr));
 
@@ -131,18 +139,40 @@ public class ExpressionEvaluator {
 	@NonNull
 	private Map<Integer, MarkIntermediateResult> evaluateOrderExpression(OrderExpression orderExpression) {
 		log.info("Evaluating order expression: {}", ExpressionHelper.exprToString(orderExpression));
-		Map<Integer, MarkIntermediateResult> result = new HashMap<>();
-		for (Map.Entry<Integer, MarkContext> entry : markContextHolder.getAllContexts().entrySet()) {
 
-			OrderEvaluator orderEvaluator = new OrderEvaluator(this.markRule, this.config);
-			ConstantValue res = orderEvaluator.evaluate(orderExpression, entry.getKey(), this.resultCtx, this.traversal, this.markContextHolder);
+		Set<String> markInstances = new HashSet<>();
+		ExpressionHelper.collectMarkInstances(orderExpression.getExp(), markInstances); // extract all used markvars from the expression
+
+		List<Integer> contextIDs = new ArrayList<>(markContextHolder.getAllContexts().keySet());
+		Collections.sort(contextIDs);
+
+		// context id -> reason, for all contexts which exceeded their budget
+		Map<Integer, String> cancelled = new ConcurrentHashMap<>();
+		Map<Integer, ConstantValue> orderResults;
+		if (config.orderEvaluationThreads <= 1 || contextIDs.size() <= 1) {
+			orderResults = new HashMap<>();
+			for (Integer contextID : contextIDs) {
+				orderResults.put(contextID, evaluateOrderInContext(orderExpression, contextID, this.traversal, cancelled));
+			}
+		} else {
+			orderResults = evaluateOrderInParallel(orderExpression, markInstances, contextIDs, cancelled);
+		}
+
+		// merge the results in the order of the contexts
+		Map<Integer, MarkIntermediateResult> result = new HashMap<>();
+		for (Integer contextID : contextIDs) {
+			ConstantValue res = orderResults.get(contextID);
+			if (cancelled.containsKey(contextID)) {
+				// only this context is cancelled, continue with the others
+				markContextHolder.setInconclusive(contextID, cancelled.get(contextID));
+				result.put(contextID, res);
+				continue;
+			}
 
 			if (markContextHolder.isCreateFindingsDuringEvaluation() && res != null && Objects.equals(res.getValue(), true)) {
-				Set<String> markInstances = new HashSet<>();
-				ExpressionHelper.collectMarkInstances(orderExpression.getExp(), markInstances); // extract all used markvars from the expression
 				if (markInstances.size() == 1) { // otherwise, the analysis did not work anyway and we did not have a result
 					@Nullable
-					Vertex operand = entry.getValue().getInstanceContext().getVertex(markInstances.iterator().next());
+					Vertex operand = markContextHolder.getContext(contextID).getInstanceContext().getVertex(markInstances.iterator().next());
 					if (operand != null) {
 						List<Region> ranges = List.of(Utils.getRegionByVertex(operand));
 						Finding f = new Finding(
@@ -156,11 +186,91 @@ public class ExpressionEvaluator {
 				}
 			}
 
-			result.put(entry.getKey(), res);
+			result.put(contextID, res);
 		}
 		return result;
 	}
 
+	/**
+	 * Evaluates the order expression in a single context.
+	 *
+	 * @param orderExpression
+	 * @param contextID
+	 * @param crymlinTraversal connection to the db
+	 * @param cancelled        receives the reason if the context exceeds its budget
+	 * @return
+	 */
+	private ConstantValue evaluateOrderInContext(OrderExpression orderExpression, Integer contextID, CrymlinTraversalSource crymlinTraversal,
+			Map<Integer, String> cancelled) {
+		OrderEvaluator orderEvaluator = new OrderEvaluator(this.markRule, this.config);
+		try {
+			markContextHolder.getBudget().startContext();
+			return orderEvaluator.evaluate(orderExpression, contextID, this.resultCtx, crymlinTraversal, this.markContextHolder);
+		}
+		catch (BudgetExceededException e) {
+			if (!e.isContextScoped()) {
+				throw e;
+			}
+			log.warn("Order evaluation of rule {} in context {} cancelled: {}", this.markRule.getName(), contextID, e.getMessage());
+			cancelled.put(contextID, e.getMessage());
+			return ErrorValue.newErrorValue(String.format("Order evaluation cancelled: %s", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Evaluates the order expression in all contexts, using {@link ServerConfiguration#orderEvaluationThreads} workers.
+	 * <p>
+	 * The contexts are grouped by the function containing their instance. The EOG walks of different functions are independent, so each group is
+	 * evaluated as one task, while the contexts of a group are evaluated one after the other and share the result of their function.
+	 *
+	 * @param orderExpression
+	 * @param markInstances   markvars used in the order expression
+	 * @param contextIDs
+	 * @param cancelled       receives the reason for all contexts which exceed their budget
+	 * @return context id -> result
+	 */
+	private Map<Integer, ConstantValue> evaluateOrderInParallel(OrderExpression orderExpression, Set<String> markInstances, List<Integer> contextIDs,
+			Map<Integer, String> cancelled) {
+		// function vertex id (or null, if unknown) -> contexts
+		Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+		for (Integer contextID : contextIDs) {
+			Object function = null;
+			if (markInstances.size() == 1) {
+				Vertex instance = markContextHolder.getContext(contextID).getInstanceContext().getVertex(markInstances.iterator().next());
+				if (instance != null) {
+					function = CrymlinQueryWrapper.getContainingFunction(instance, this.traversal).map(Vertex::id).orElse(null);
+				}
+			}
+			groups.computeIfAbsent(function, x -> new ArrayList<>()).add(contextID);
+		}
+		log.info("Evaluating order of rule {} in {} functions", this.markRule.getName(), groups.size());
+
+		Map<Integer, ConstantValue> results = new ConcurrentHashMap<>();
+		ForkJoinPool pool = new ForkJoinPool(Math.min(config.orderEvaluationThreads, groups.size()));
+		try {
+			List<ForkJoinTask<?>> tasks = new ArrayList<>();
+			for (List<Integer> group : groups.values()) {
+				tasks.add(pool.submit(() -> {
+					// each worker uses its own connection to the db
+					try (TraversalConnection connection = new TraversalConnection(this.resultCtx.getDatabase())) {
+						for (Integer contextID : group) {
+							ConstantValue res = evaluateOrderInContext(orderExpression, contextID, connection.getCrymlinTraversal(), cancelled);
+							if (res != null) {
+								results.put(contextID, res);
+							}
+						}
+					}
+				}));
+			}
+			// rethrows the first failure, e.g. if the time budget of the rule is exceeded
+			tasks.forEach(ForkJoinTask::join);
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return results;
+	}
+
 	@NonNull
 	private Map<Integer, MarkIntermediateResult> evaluateLogicalExpr(Expression expr) {
 		log.debug("Evaluating logical expression: {}", ExpressionHelper.exprToString(expr));
@@ -385,17 +495,9 @@ public class ExpressionEvaluator {
 		if (leftResult == null || key == null) {
 			return ErrorValue.newErrorValue("Could not find a result");
 		}
-		if (leftResult.containsKey(key)) {
-			return leftResult.get(key);
-		}
-		List<Integer> copyStack = markContextHolder.getCopyStack(key);
-		if (copyStack != null && !copyStack.isEmpty()) {
-			for (int i = copyStack.size() - 1; i >= 0; i--) {
-				int newKey = copyStack.get(i);
-				if (leftResult.containsKey(newKey)) {
-					return leftResult.get(newKey);
-				}
-			}
+		MarkIntermediateResult result = markContextHolder.getResultOfContextOrOrigin(leftResult, key);
+		if (result != null) {
+			return result;
 		}
 
 		return ErrorValue.newErrorValue("Could not find a result");
@@ -490,7 +592,9 @@ public class ExpressionEvaluator {
 					continue;
 				}
 
+				long start = System.nanoTime();
 				ConstantValue cv = builtin.get().execute(resultCtx, (ListValue) (entry.getValue()), entry.getKey(), markContextHolder, this);
+				markContextHolder.getProfile().addBuiltinCall(functionName, System.nanoTime() - start);
 
 				result.put(entry.getKey(), cv);
 
@@ -782,8 +886,14 @@ public class ExpressionEvaluator {
 
 		Map<Integer, MarkIntermediateResult> resolvedOperand = markContextHolder.getResolvedOperand(operand);
 
+		if (resolvedOperand == null && markContextHolder.getAllContexts().isEmpty()) {
+			// no context is alive (e.g., the when-part did not hold for any of them), nothing to resolve
+			return new HashMap<>();
+		}
+
 		if (resolvedOperand == null) {
 			// if this operand is not resolved yet in this expressionevaluation, resolve it
+			markContextHolder.getProfile().addOperandResolution();
 			Map<Integer, List<CPGVertexWithValue>> operandVertices = CrymlinQueryWrapper.resolveOperand(resultCtx.getDatabase(), markContextHolder, operand, markRule,
 				markModel, traversal);
 			if (operandVertices.size() == 0) {
@@ -2,11 +2,13 @@
 package de.fraunhofer.aisec.analysis.markevaluation;
 
 import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
+import de.fraunhofer.aisec.analysis.structures.BudgetExceededException;
 import de.fraunhofer.aisec.analysis.structures.CPGInstanceContext;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
+import de.fraunhofer.aisec.analysis.structures.OrderFunctionResult;
 import de.fraunhofer.aisec.analysis.structures.Pair;
 import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
@@ -14,8 +16,7 @@ import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
 import de.fraunhofer.aisec.markmodel.MEntity;
 import de.fraunhofer.aisec.markmodel.MOp;
 import de.fraunhofer.aisec.markmodel.MRule;
-import de.fraunhofer.aisec.markmodel.fsm.FSM;
-import de.fraunhofer.aisec.markmodel.fsm.Node;
+import de.fraunhofer.aisec.markmodel.fsm.OrderDFA;
 import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
@@ -24,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -32,7 +34,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.END_COLUMN;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.END_LINE;
@@ -44,6 +45,8 @@ import static java.lang.Math.toIntExact;
 public class OrderNFAEvaluator {
 
 	private static final Logger log = LoggerFactory.getLogger(OrderNFAEvaluator.class);
+	// state of a base which has not been seen on a path
+	private static final int NO_STATE = -1;
 	private final MRule rule;
 	private final MarkContextHolder markContextHolder;
 
@@ -107,23 +110,15 @@ public class OrderNFAEvaluator {
 
 		Vertex functionDeclaration = containingFunction.get();
 
-		boolean isOrderValid = true;
-
 		// rule.getFSM().pushToDB(); //debug only
 		log.info("\tEvaluating rule {}", rule.getName());
 
+		// the DFA is compiled once per rule and shared by all contexts
+		OrderDFA dfa = rule.getOrderDFA(orderExpression.getExp());
+
 		// Cache which Vertex belongs to which Op/Entity
 		// a vertex can _only_ belong to one entity/op!
-		HashMap<Vertex, MOp> verticesToOp = new HashMap<>();
-		for (Map.Entry<String, Pair<String, MEntity>> entry : rule.getEntityReferences().entrySet()) {
-			MEntity ent = entry.getValue().getValue1();
-			if (ent == null) {
-				continue;
-			}
-			for (MOp op : ent.getOps()) {
-				op.getAllVertices().forEach(v -> verticesToOp.put(v, op));
-			}
-		}
+		Map<Vertex, MOp> verticesToOp = markContextHolder.getOrderVerticesToOp(this::getVerticesToOp);
 
 		if (verticesToOp.isEmpty()) {
 			log.info("no nodes match this rule. Skipping rule.");
@@ -144,27 +139,91 @@ public class OrderNFAEvaluator {
 			referencedVertices.add(v.id());
 		}
 
-		FSM fsm = new FSM();
-		fsm.sequenceToFSM(orderExpression.getExp());
+		// the function is evaluated once for all bases. All further contexts in this function are answered from the cache
+		Map<Object, OrderFunctionResult> functionResults = markContextHolder.getOrderResults(orderExpression);
+		OrderFunctionResult functionResult = functionResults.get(functionDeclaration.id());
+		if (functionResult == null) {
+			try {
+				functionResult = evaluateFunction(dfa, verticesToOp, functionDeclaration);
+			}
+			catch (BudgetExceededException e) {
+				if (e.isContextScoped()) {
+					// all contexts in this function would exceed the budget the same way
+					functionResults.put(functionDeclaration.id(), OrderFunctionResult.cancelled(e.getMessage()));
+				}
+				throw e;
+			}
+			functionResults.put(functionDeclaration.id(), functionResult);
+		} else if (functionResult.isCancelled()) {
+			throw new BudgetExceededException(functionResult.getCancelReason(), true);
+		}
+
+		boolean isOrderValid = true;
+		for (OrderFunctionResult.BaseResult baseResult : functionResult.getBases()) {
+			// bases without a reference cannot be attributed to an instance and are considered for all contexts
+			if (baseResult.getRef() != null && !referencedVertices.contains(baseResult.getRef())) {
+				continue;
+			}
+			isOrderValid &= baseResult.isValid();
+			if (markContextHolder.isCreateFindingsDuringEvaluation()) {
+				ctx.getFindings().addAll(baseResult.getFindings());
+			}
+		}
 
+		ConstantValue of = ConstantValue.of(isOrderValid);
+		if (markContextHolder.isCreateFindingsDuringEvaluation()) {
+			markContextHolder.getContext(contextID).setFindingAlreadyAdded(true);
+		}
+		return of;
+	}
+
+	private Map<Vertex, MOp> getVerticesToOp() {
+		HashMap<Vertex, MOp> verticesToOp = new HashMap<>();
+		for (Map.Entry<String, Pair<String, MEntity>> entry : rule.getEntityReferences().entrySet()) {
+			MEntity ent = entry.getValue().getValue1();
+			if (ent == null) {
+				continue;
+			}
+			for (MOp op : ent.getOps()) {
+				op.getAllVertices().forEach(v -> verticesToOp.put(v, op));
+			}
+		}
+		return verticesToOp;
+	}
+
+	/**
+	 * Walks the EOG of a function once and tracks the order of all bases used in calls to the ops of the rule.
+	 *
+	 * @param dfa                 DFA of the order expression
+	 * @param verticesToOp        op of each call vertex
+	 * @param functionDeclaration
+	 * @return verdict and findings of each base
+	 */
+	private OrderFunctionResult evaluateFunction(OrderDFA dfa, Map<Vertex, MOp> verticesToOp, Vertex functionDeclaration) {
 		log.info("Evaluating function {}", (Object) functionDeclaration.value("name"));
 
 		HashSet<Vertex> currentWorklist = new HashSet<>();
 		currentWorklist.add(functionDeclaration);
 
-		// which bases did we already see, but are not initialized correctly base to set of eogpaths
-		HashMap<String, HashSet<String>> disallowedBases = new HashMap<>();
-		// stores the current markings in the FSM (i.e., which base is at which FSM-node)
-		HashMap<String, HashSet<Node>> baseToFSMNodes = new HashMap<>();
-		// last usage of base
-		HashMap<String, Vertex> lastBaseUsage = new HashMap<>();
-
-		HashMap<Long, HashSet<String>> nodeIDtoEOGPathSet = new HashMap<>();
-		HashSet<String> startEOG = new HashSet<>();
-		startEOG.add("0");
+		// each branch of the EOG is a path, identified by an int which knows the path it was split from
+		EogPaths paths = new EogPaths();
+		// all bases (base name + "|" + referenced declaration) seen so far, identified by their index
+		List<String> bases = new ArrayList<>();
+		List<OrderFunctionResult.BaseResult> baseResults = new ArrayList<>();
+		HashMap<String, Integer> baseIds = new HashMap<>();
+		// which bases did we already see, but are not initialized correctly. base to the paths on which (and below) it must not be used anymore
+		HashMap<Integer, HashSet<Integer>> disallowedBases = new HashMap<>();
+		// stores the current state in the DFA of each base (indexed by base) for each path
+		PathStates pathToStates = new PathStates();
+		// last usage of base, keyed by path and base (see usageKey())
+		HashMap<Long, Vertex> lastBaseUsage = new HashMap<>();
+
+		HashMap<Long, HashSet<Integer>> nodeIDtoEOGPathSet = new HashMap<>();
+		HashSet<Integer> startEOG = new HashSet<>();
+		startEOG.add(EogPaths.ROOT);
 		nodeIDtoEOGPathSet.put((Long) functionDeclaration.id(), startEOG);
 
-		HashSet<String> seenStates = new HashSet<>();
+		HashSet<StateFingerprint> seenStates = new HashSet<>();
 		long visitedNodes = 0;
 
 		while (!currentWorklist.isEmpty()) {
@@ -172,16 +231,16 @@ public class OrderNFAEvaluator {
 
 			for (Vertex vertex : currentWorklist) {
 				visitedNodes++;
+				markContextHolder.getBudget().visitEogNode();
 
-				String currentState = getStateSnapshot(vertex, baseToFSMNodes);
-				seenStates.add(currentState);
+				seenStates.add(new StateFingerprint(vertex.id(), pathToStates.getFingerprint()));
 
-				HashSet<String> eogPathSet = nodeIDtoEOGPathSet.get((Long) vertex.id());
+				HashSet<Integer> eogPathSet = nodeIDtoEOGPathSet.get((Long) vertex.id());
 				if (eogPathSet == null) {
 					log.warn("Error during Order-evaluation, no path set for node {}", (Long) vertex.id());
 					continue;
 				}
-				for (String eogPath : eogPathSet) {
+				for (int eogPath : eogPathSet) {
 
 					// ... no direct access to the labels TreeSet of Neo4JVertex
 					if ((vertex.label().contains("MemberCallExpression") || vertex.label().equals("CallExpression")
@@ -257,86 +316,64 @@ public class OrderNFAEvaluator {
 								log.error("base must not be null for {}", vertex.label());
 							} else {
 
-								if (refNode != null
-										&& !referencedVertices.contains(refNode.id())) {
-									log.info("this call does not reference the function we are looking at, skipping.");
+								// if we have a reference to a node in the cpg, we add this to the prefixed
+								// base this way, we could differentiate between nodes with the same base
+								// name, but referencing different variables (e.g., if they are used in
+								// different blocks)
+								if (ref != null) {
+									base += "|" + ref;
+								}
+
+								Object refId = refNode == null ? null : refNode.id();
+								int baseId = baseIds.computeIfAbsent(base, x -> {
+									bases.add(x);
+									baseResults.add(new OrderFunctionResult.BaseResult(refId));
+									return bases.size() - 1;
+								});
 
+								if (isDisallowedBase(disallowedBases, paths, eogPath, baseId)) {
+									// we hide base errors for now!
 								} else {
-									// if we have a reference to a node in the cpg, we add this to the prefixed
-									// base this way, we could differentiate between nodes with the same base
-									// name, but referencing different variables (e.g., if they are used in
-									// different blocks)
-									if (ref != null) {
-										base += "|" + ref;
+									int state = pathToStates.getState(eogPath, baseId);
+									if (state == NO_STATE) {
+										// we have not seen this base before. check if this is the start of an order
+										state = dfa.getStart();
 									}
-
-									String prefixedBase = eogPath + "." + base;
-
-									if (isDisallowedBase(disallowedBases, eogPath, base)) {
-										// we hide base errors for now!
+									int nextState = dfa.step(state, dfa.getSymbol(op.getName()));
+
+									if (nextState == OrderDFA.ERROR) {
+										// if not, this call is not allowed, and this base must not be used in the
+										// following eog
+										Finding f = new Finding(
+											"Violation against Order: "
+													+ vertex.value("code")
+													+ " ("
+													+ (op == null ? "null" : op.getName())
+													+ ") is not allowed. Expected one of: "
+													+ String.join(", ", dfa.getExpected(state))
+													+ " ("
+													+ rule.getErrorMessage()
+													+ ")",
+											rule.getErrorMessage(),
+											CrymlinQueryWrapper.getFileLocation(vertex),
+											toIntExact(vertex.value(START_LINE)) - 1,
+											toIntExact(vertex.value(END_LINE)) - 1,
+											toIntExact(vertex.value(START_COLUMN)) - 1,
+											toIntExact(vertex.value(END_COLUMN)) - 1);
+										baseResults.get(baseId).addViolation(f);
+										log.info("Finding: {}", f);
+										disallowedBases.computeIfAbsent(baseId, x -> new HashSet<>()).add(eogPath);
 									} else {
-										Set<Node> nodesInFSM;
-										if (baseToFSMNodes.get(prefixedBase) == null) {
-											// we have not seen this base before. check if this is the start of an order
-											nodesInFSM = fsm.getStart(); // start nodes
-										} else {
-											nodesInFSM = baseToFSMNodes.get(prefixedBase); // nodes calculated in previous step
+										Vertex vertex1 = lastBaseUsage.get(usageKey(eogPath, baseId));
+										long prevMaxLine = 0;
+										if (vertex1 != null) {
+											prevMaxLine = vertex1.value(START_LINE);
 										}
-
-										HashSet<Node> nextNodesInFSM = new HashSet<>();
-
-										// did at least one fsm-Node-match occur?
-										boolean match = false;
-										for (Node n : nodesInFSM) {
-											// are there any ops corresponding to the current base and the current function name?
-											if (op != null && op.getName().equals(n.getOp())) {
-												// this also has as effect, that if the FSM is in a end-state and a
-												// intermediate state, and we follow the intermediate state, the
-												// end-state is removed again, which is correct!
-												nextNodesInFSM.addAll(n.getSuccessors());
-												match = true;
-											}
-										}
-										if (!match) {
-											// if not, this call is not allowed, and this base must not be used in the
-											// following eog
-											isOrderValid = false;
-											Finding f = new Finding(
-												"Violation against Order: "
-														+ vertex.value("code")
-														+ " ("
-														+ (op == null ? "null" : op.getName())
-														+ ") is not allowed. Expected one of: "
-														+ nodesInFSM.stream()
-																.map(Node::getName)
-																.sorted()
-																.collect(Collectors.joining(", "))
-														+ " ("
-														+ rule.getErrorMessage()
-														+ ")",
-												rule.getErrorMessage(),
-												CrymlinQueryWrapper.getFileLocation(vertex),
-												toIntExact(vertex.value(START_LINE)) - 1,
-												toIntExact(vertex.value(END_LINE)) - 1,
-												toIntExact(vertex.value(START_COLUMN)) - 1,
-												toIntExact(vertex.value(END_COLUMN)) - 1);
-											if (markContextHolder.isCreateFindingsDuringEvaluation()) {
-												ctx.getFindings().add(f);
-											}
-											log.info("Finding: {}", f);
-											disallowedBases.computeIfAbsent(base, x -> new HashSet<>()).add(eogPath);
-										} else {
-											Vertex vertex1 = lastBaseUsage.get(prefixedBase);
-											long prevMaxLine = 0;
-											if (vertex1 != null) {
-												prevMaxLine = vertex1.value(START_LINE);
-											}
-											long newLine = vertex.value(START_LINE);
-											if (prevMaxLine <= newLine) {
-												lastBaseUsage.put(prefixedBase, vertex);
-											}
-											baseToFSMNodes.put(prefixedBase, nextNodesInFSM);
+										long newLine = vertex.value(START_LINE);
+										if (prevMaxLine <= newLine) {
+											lastBaseUsage.put(usageKey(eogPath, baseId), vertex);
 										}
+										pathToStates.setState(eogPath, baseId, nextState);
 									}
 								}
 							}
@@ -348,33 +385,19 @@ public class OrderNFAEvaluator {
 
 					// if more than one vertex follows the curreant one, we need to branch the eogPath
 					if (outVertices.size() > 1) { // split
-						HashSet<String> oldBases = new HashSet<>();
-						HashMap<String, HashSet<Node>> newBases = new HashMap<>();
-						// first we collect all entries which we need to remove from the baseToFSMNodes
-						// map we also store these entries without the eog path prefix, to update later
-						// in (1)
-						for (Map.Entry<String, HashSet<Node>> entry : baseToFSMNodes.entrySet()) {
-							if (entry.getKey().startsWith(eogPath)) {
-								oldBases.add(entry.getKey());
-								// keep the "." before the real base, as we need it later anyway
-								newBases.put(entry.getKey().substring(eogPath.length()),
-									entry.getValue());
-							}
-						}
-						oldBases.forEach(baseToFSMNodes::remove);
-
-						// (1) update all entries previously removed from the baseToFSMNodes map with
-						// the new eogpath as prefix to the base
+						// the states of all bases are moved from the current path to a new path for each branch
+						int[] states = pathToStates.remove(eogPath);
 						for (int i = outVertices.size() - 1; i >= 0; i--) {
-							// also update them in the baseToFSMNodes map
-							String newEOGPath = eogPath + i;
-							newBases.forEach((k, v) -> baseToFSMNodes.put(newEOGPath + k, v));
+							int newEOGPath = paths.branch(eogPath);
+							if (states != null) {
+								pathToStates.put(newEOGPath, states.clone());
+							}
 
-							String stateOfNext = getStateSnapshot(outVertices.get(i), baseToFSMNodes);
+							StateFingerprint stateOfNext = new StateFingerprint(outVertices.get(i).id(), pathToStates.getFingerprint());
 							if (seenStates.contains(stateOfNext)) {
 								log.debug("node/FSM state already visited: {}. Do not split into this.", stateOfNext);
 								outVertices.remove(i);
-								newBases.forEach((k, v) -> baseToFSMNodes.remove(newEOGPath + k));
+								pathToStates.remove(newEOGPath);
 							} else {
 								// update the eogpath directly in the vertices for the next step
 								nodeIDtoEOGPathSet.computeIfAbsent((Long) outVertices.get(i).id(),
@@ -400,119 +423,232 @@ public class OrderNFAEvaluator {
 		log.info("Done evaluating function {}, rule {}. Visited Nodes: {}", functionDeclaration.value("name"), rule.getName(), visitedNodes);
 		// now the whole function was evaluated.
 		// Check that the FSM is in its end/beginning state for all bases
-		HashMap<String, HashSet<String>> nonterminatedBases = new HashMap<>();
-		for (Map.Entry<String, HashSet<Node>> entry : baseToFSMNodes.entrySet()) {
-			boolean hasEnd = false;
-			HashSet<String> notEnded = new HashSet<>();
-			for (Node n : entry.getValue()) {
-				if (n.isEnd()) {
-					// if one of the nodes in this fsm is at an END-node, this is fine.
-					hasEnd = true;
-					break;
-				} else {
-					notEnded.add(n.getName());
+		for (Map.Entry<Integer, int[]> entry : pathToStates.entrySet()) {
+			int[] states = entry.getValue();
+			for (int baseId = 0; baseId < states.length; baseId++) {
+				// if the DFA may end in this state, this is fine.
+				if (states[baseId] == NO_STATE || dfa.isAccepting(states[baseId])) {
+					continue;
 				}
+				// remove a number of branches until we find a last usage
+				Vertex vertex = null;
+				for (int path = entry.getKey(); vertex == null && path != EogPaths.NONE; path = paths.getParent(path)) {
+					vertex = lastBaseUsage.get(usageKey(path, baseId));
+				}
+				String base = bases.get(baseId).split("\\|")[0]; // remove potential refers_to local
+				URI file = null;
+				int startLine = -1;
+				int endLine = -1;
+				int startCol = -1;
+				int endCol = -1;
+				if (vertex != null) {
+					file = CrymlinQueryWrapper.getFileLocation(vertex);
+					startLine = toIntExact(vertex.value(START_LINE)) - 1;
+					endLine = toIntExact(vertex.value(END_LINE)) - 1;
+					startCol = toIntExact(vertex.value(START_COLUMN)) - 1;
+					endCol = toIntExact(vertex.value(END_COLUMN)) - 1;
+				}
+				Finding f = new Finding(
+					"Violation against Order: Base "
+							+ base
+							+ " is not correctly terminated. Expected one of ["
+							+ String.join(", ", dfa.getExpected(states[baseId]))
+							+ "] to follow the correct last call on this base."
+							+ " ("
+							+ rule.getErrorMessage()
+							+ ")",
+					rule.getErrorMessage(),
+					file,
+					startLine,
+					endLine,
+					startCol,
+					endCol);
+				baseResults.get(baseId).addViolation(f);
+				log.info("Finding: {}", f);
 			}
-			if (!hasEnd) {
-				// extract the real base name from eogpath.base
-				HashSet<String> next = nonterminatedBases.computeIfAbsent(entry.getKey(),
-					x -> new HashSet<>());
-				next.addAll(notEnded);
+		}
+		return OrderFunctionResult.of(baseResults);
+	}
+
+	private boolean isDisallowedBase(
+			HashMap<Integer, HashSet<Integer>> disallowedBases, EogPaths paths, int eogPath, int baseId) {
+		HashSet<Integer> disallowedEOGPaths = disallowedBases.get(baseId);
+		if (disallowedEOGPaths != null) {
+			return disallowedEOGPaths.stream().anyMatch(disallowed -> paths.isOnPath(eogPath, disallowed));
+		}
+		return false;
+	}
+
+	private static long usageKey(int eogPath, int baseId) {
+		return ((long) eogPath << 32) | baseId;
+	}
+
+	/**
+	 * Tree of the branches of the EOG. Each path is identified by an int and knows the path it has been split from.
+	 */
+	private static final class EogPaths {
+		static final int NONE = -1;
+		static final int ROOT = 0;
+
+		private int[] parents = { NONE };
+		private int size = 1;
+
+		/**
+		 * Creates a new path branching off the given path.
+		 */
+		int branch(int parent) {
+			if (size == parents.length) {
+				parents = Arrays.copyOf(parents, size * 2);
 			}
+			parents[size] = parent;
+			return size++;
 		}
-		for (Map.Entry<String, HashSet<String>> entry : nonterminatedBases.entrySet()) {
-			isOrderValid = false;
-			Vertex vertex = lastBaseUsage.get(entry.getKey());
-			if (vertex == null) {
-				String[] split = entry.getKey().split("\\.");
-				if (split.length != 2) {
-					log.warn("Invalid eogpath");
-				} else {
-					if (split[0].length() <= 1) {
-						log.warn("Invalid eogpath length");
-					} else {
-						while (vertex == null || split[0].length() > 2) { // remove a number of branches until we find a last usage
-							split[0] = split[0].substring(0, split[0].length() - 1);
-							vertex = lastBaseUsage.get(split[0] + "." + split[1]);
-						}
-					}
+
+		int getParent(int path) {
+			return parents[path];
+		}
+
+		/**
+		 * @return true, if <code>path</code> is <code>ancestor</code> or has been split from it
+		 */
+		boolean isOnPath(int path, int ancestor) {
+			for (int p = path; p != NONE; p = parents[p]) {
+				if (p == ancestor) {
+					return true;
 				}
 			}
-			String base = entry.getKey().split("\\|")[0]; // remove potential refers_to local
-			if (base.contains(".")) {
-				base = base.substring(base.indexOf('.') + 1); // remove eogpath
+			return false;
+		}
+	}
+
+	/**
+	 * The DFA states of all bases on all paths.
+	 * <p>
+	 * Alongside the states, the number of paths on which a base is in a state is counted for each pair of base and state. The fingerprint
+	 * is the XOR of a random key (Zobrist hashing) of each pair on at least one path. It identifies the states of all bases independent of
+	 * the path (for each base the set of DFA states it is in on any path), and is updated with each change instead of being recomputed from
+	 * all paths and bases.
+	 */
+	private static final class PathStates {
+		private final HashMap<Integer, int[]> states = new HashMap<>();
+		// (base, state) -> number of paths on which the base is in the state
+		private final HashMap<Long, Integer> counts = new HashMap<>();
+		private long fingerprint = 0;
+
+		int getState(int eogPath, int baseId) {
+			int[] pathStates = states.get(eogPath);
+			if (pathStates == null || baseId >= pathStates.length) {
+				return NO_STATE;
 			}
-			URI file = null;
-			int startLine = -1;
-			int endLine = -1;
-			int startCol = -1;
-			int endCol = -1;
-			if (vertex != null) {
-				file = CrymlinQueryWrapper.getFileLocation(vertex);
-				startLine = toIntExact(vertex.value(START_LINE)) - 1;
-				endLine = toIntExact(vertex.value(END_LINE)) - 1;
-				startCol = toIntExact(vertex.value(START_COLUMN)) - 1;
-				endCol = toIntExact(vertex.value(END_COLUMN)) - 1;
+			return pathStates[baseId];
+		}
+
+		void setState(int eogPath, int baseId, int state) {
+			int[] pathStates = states.get(eogPath);
+			if (pathStates == null || baseId >= pathStates.length) {
+				int oldLength = pathStates == null ? 0 : pathStates.length;
+				pathStates = pathStates == null ? new int[baseId + 1] : Arrays.copyOf(pathStates, baseId + 1);
+				Arrays.fill(pathStates, oldLength, pathStates.length, NO_STATE);
+				states.put(eogPath, pathStates);
 			}
-			Finding f = new Finding(
-				"Violation against Order: Base "
-						+ base
-						+ " is not correctly terminated. Expected one of ["
-						+ entry.getValue()
-								.stream()
-								.sorted()
-								.collect(Collectors.joining(", "))
-						+ "] to follow the correct last call on this base."
-						+ " ("
-						+ rule.getErrorMessage()
-						+ ")",
-				rule.getErrorMessage(),
-				file,
-				startLine,
-				endLine,
-				startCol,
-				endCol);
-			if (markContextHolder.isCreateFindingsDuringEvaluation()) {
-				ctx.getFindings()
-						.add(f);
+			count(baseId, pathStates[baseId], -1);
+			pathStates[baseId] = state;
+			count(baseId, state, 1);
+		}
+
+		void put(int eogPath, int[] pathStates) {
+			int[] old = states.put(eogPath, pathStates);
+			countAll(old, -1);
+			countAll(pathStates, 1);
+		}
+
+		int[] remove(int eogPath) {
+			int[] old = states.remove(eogPath);
+			countAll(old, -1);
+			return old;
+		}
+
+		Set<Map.Entry<Integer, int[]>> entrySet() {
+			return states.entrySet();
+		}
+
+		long getFingerprint() {
+			return fingerprint;
+		}
+
+		private void countAll(int[] pathStates, int delta) {
+			if (pathStates != null) {
+				for (int baseId = 0; baseId < pathStates.length; baseId++) {
+					count(baseId, pathStates[baseId], delta);
+				}
 			}
-			log.info("Finding: {}", f);
 		}
-		ConstantValue of = ConstantValue.of(isOrderValid);
-		if (markContextHolder.isCreateFindingsDuringEvaluation()) {
-			markContextHolder.getContext(contextID).setFindingAlreadyAdded(true);
+
+		private void count(int baseId, int state, int delta) {
+			if (state == NO_STATE) {
+				return;
+			}
+			long key = ((long) baseId << 32) | (state & 0xFFFFFFFFL);
+			int count = counts.getOrDefault(key, 0);
+			int newCount = count + delta;
+			if (newCount == 0) {
+				counts.remove(key);
+			} else {
+				counts.put(key, newCount);
+			}
+			if (count == 0 || newCount == 0) {
+				// the pair was added to or removed from the set of states
+				fingerprint ^= zobristKey(key);
+			}
 		}
-		return of;
-	}
 
-	private boolean isDisallowedBase(
-			HashMap<String, HashSet<String>> disallowedBases, String eogpath, String base) {
-		HashSet<String> disallowedEOGPaths = disallowedBases.get(base);
-		if (disallowedEOGPaths != null) {
-			return disallowedEOGPaths.stream().anyMatch(eogpath::startsWith);
+		/**
+		 * Pseudo-random key of a pair of base and state (SplitMix64 finalizer).
+		 */
+		private static long zobristKey(long key) {
+			long z = key + 0x9E3779B97F4A7C15L;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
 		}
-		return false;
 	}
 
-	private String getStateSnapshot(Vertex v, HashMap<String, HashSet<Node>> baseToFSMNodes) {
-		HashMap<String, HashSet<Node>> simplified = new HashMap<>();
+	/**
+	 * A vertex and the fingerprint of the DFA states of all bases (see {@link PathStates}).
+	 * <p>
+	 * Two snapshots with different states are considered equal if their 64 bit fingerprints collide, which is negligible for the number of
+	 * states seen in a function.
+	 */
+	private static final class StateFingerprint {
+		private final Object vertexId;
+		private final long states;
+
+		StateFingerprint(Object vertexId, long states) {
+			this.vertexId = vertexId;
+			this.states = states;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof StateFingerprint)) {
+				return false;
+			}
+			StateFingerprint that = (StateFingerprint) o;
+			return states == that.states && vertexId.equals(that.vertexId);
+		}
 
-		for (Map.Entry<String, HashSet<Node>> entry : baseToFSMNodes.entrySet()) {
-			simplified.computeIfAbsent(entry.getKey().split("\\.")[1], x -> new HashSet<>()).addAll(entry.getValue());
+		@Override
+		public int hashCode() {
+			return 31 * vertexId.hashCode() + Long.hashCode(states);
 		}
 
-		List<String> fsmStates = simplified.entrySet()
-				.stream()
-				.map(
-					x -> x.getKey()
-							+ "("
-							+ x.getValue().stream().map(Node::toString).collect(Collectors.joining(","))
-							+ ")")
-				.distinct()
-				.sorted()
-				.collect(Collectors.toList());
-
-		return v.id() + " " + String.join(",", fsmStates);
+		@Override
+		public String toString() {
+			return vertexId + " " + Long.toHexString(states);
+		}
 	}
 
 }
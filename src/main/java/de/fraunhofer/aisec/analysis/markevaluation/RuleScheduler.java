@@ -0,0 +1,153 @@
+
+package de.fraunhofer.aisec.analysis.markevaluation;
+
+import de.fraunhofer.aisec.analysis.structures.Pair;
+import de.fraunhofer.aisec.analysis.structures.TypestateMode;
+import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
+import de.fraunhofer.aisec.mark.markDsl.RuleStatement;
+import de.fraunhofer.aisec.markmodel.MEntity;
+import de.fraunhofer.aisec.markmodel.MOp;
+import de.fraunhofer.aisec.markmodel.MRule;
+import de.fraunhofer.aisec.markmodel.Mark;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which rules need to be evaluated and in which order.
+ * <p>
+ * Rules whose entities do not have any matching CPG node are dropped. The remaining rules are sorted by their estimated cost, most expensive
+ * first, so that a pool of workers finishes as early as possible.
+ * <p>
+ * Requires that the vertices of all ops have been precalculated (see {@link MOp#getAllVertices()}).
+ */
+public class RuleScheduler {
+
+	private static final Logger log = LoggerFactory.getLogger(RuleScheduler.class);
+
+	/** Cost factor of rules containing an order expression, evaluated with the NFA. */
+	private static final long NFA_ORDER_FACTOR = 10;
+
+	/** Cost factor of rules containing an order expression, evaluated with the WPDS. */
+	private static final long WPDS_ORDER_FACTOR = 100;
+
+	@NonNull
+	private final Mark markModel;
+
+	@NonNull
+	private final TypestateMode typestateMode;
+
+	public RuleScheduler(@NonNull Mark markModel, @NonNull TypestateMode typestateMode) {
+		this.markModel = markModel;
+		this.typestateMode = typestateMode;
+	}
+
+	/**
+	 * Returns all relevant rules, most expensive first.
+	 *
+	 * @return
+	 */
+	public List<ScheduledRule> schedule() {
+		List<ScheduledRule> scheduled = new ArrayList<>();
+		for (MRule rule : markModel.getRules()) {
+			Map<String, Pair<String, MEntity>> references = rule.getEntityReferences();
+			long contexts = 1;
+			boolean hasCPGNodes = references.isEmpty();
+			for (Map.Entry<String, Pair<String, MEntity>> entity : references.entrySet()) {
+				if (entity.getValue() == null || entity.getValue().getValue1() == null) {
+					log.warn("Rule {} references an unknown entity {}", rule.getName(), entity.getKey());
+					continue;
+				}
+				long vertices = 0;
+				for (MOp op : entity.getValue().getValue1().getOps()) {
+					vertices += op.getAllVertices().size();
+				}
+				hasCPGNodes |= vertices > 0;
+				contexts = saturatedMultiply(contexts, Math.max(1, vertices));
+			}
+
+			if (!hasCPGNodes) {
+				log.warn("Rule {} does not have any corresponding CPG-nodes. Skipping", rule.getName());
+				continue;
+			}
+
+			scheduled.add(new ScheduledRule(rule, saturatedMultiply(contexts, getExpressionWeight(rule.getStatement()))));
+		}
+
+		// stable, rules with equal cost keep the order of the MARK files
+		scheduled.sort(Comparator.comparingLong(ScheduledRule::getEstimatedCost).reversed());
+		return scheduled;
+	}
+
+	/**
+	 * Number of nodes in the when- and ensure-part, weighted by the cost of an order evaluation.
+	 *
+	 * @param ruleStmt
+	 * @return
+	 */
+	private long getExpressionWeight(@NonNull RuleStatement ruleStmt) {
+		long weight = 0;
+		boolean hasOrder = false;
+		List<EObject> parts = new ArrayList<>();
+		if (ruleStmt.getCond() != null) {
+			parts.add(ruleStmt.getCond().getExp());
+		}
+		if (ruleStmt.getEnsure() != null) {
+			parts.add(ruleStmt.getEnsure().getExp());
+		}
+		for (EObject part : parts) {
+			if (part == null) {
+				continue;
+			}
+			weight++;
+			hasOrder |= part instanceof OrderExpression;
+			TreeIterator<EObject> it = part.eAllContents();
+			while (it.hasNext()) {
+				EObject next = it.next();
+				weight++;
+				hasOrder |= next instanceof OrderExpression;
+			}
+		}
+		if (hasOrder) {
+			weight = saturatedMultiply(weight, typestateMode == TypestateMode.WPDS ? WPDS_ORDER_FACTOR : NFA_ORDER_FACTOR);
+		}
+		return Math.max(1, weight);
+	}
+
+	private static long saturatedMultiply(long a, long b) {
+		long high = Math.multiplyHigh(a, b);
+		long low = a * b;
+		if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+			return low;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/** A rule together with its estimated evaluation cost. */
+	public static class ScheduledRule {
+		@NonNull
+		private final MRule rule;
+		private final long estimatedCost;
+
+		public ScheduledRule(@NonNull MRule rule, long estimatedCost) {
+			this.rule = rule;
+			this.estimatedCost = estimatedCost;
+		}
+
+		@NonNull
+		public MRule getRule() {
+			return rule;
+		}
+
+		public long getEstimatedCost() {
+			return estimatedCost;
+		}
+	}
+}
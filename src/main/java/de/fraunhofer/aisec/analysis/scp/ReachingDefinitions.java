@@ -0,0 +1,120 @@
+package de.fraunhofer.aisec.analysis.scp;
+
+import de.fraunhofer.aisec.analysis.structures.ConstantValue;
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.BinaryOperator;
+import de.fraunhofer.aisec.crymlin.connectors.db.GraphCaches;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.EOG;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.REFERS_TO;
+
+/**
+ * Reaching assignments of variables, computed once per variable and shared by all resolvers of a graph.
+ * <p>
+ * The reaching assignment of a variable at an EOG vertex is the assignment which is closest to the vertex when walking the EOG backwards,
+ * without walking beyond the declaration of the variable. It is computed by a single breadth-first search along the EOG, starting at all
+ * assignments of the variable at once. This answers all references to the variable by lookup, instead of walking the EOG backwards for
+ * each of them.
+ * <p>
+ * Resolved values of assignments and declarations are cached as well.
+ */
+class ReachingDefinitions {
+
+	// declaration vertex id -> vertex id -> reaching assignment
+	private final Map<Object, Map<Object, Vertex>> assignments = new ConcurrentHashMap<>();
+
+	// assignment or declaration vertex id -> value
+	private final Map<Object, Optional<ConstantValue>> values = new ConcurrentHashMap<>();
+
+	private ReachingDefinitions() {
+	}
+
+	@NonNull
+	static ReachingDefinitions of(@NonNull Graph graph) {
+		return GraphCaches.computeIfAbsent(graph, ReachingDefinitions.class, ReachingDefinitions::new);
+	}
+
+	/**
+	 * Returns the assignment of a variable which reaches a vertex.
+	 *
+	 * @param declaration the declaration of the variable
+	 * @param vertex      a vertex using the variable
+	 * @return the assignment, or null if the variable is not assigned on the way from its declaration to the vertex
+	 */
+	@Nullable
+	Vertex getReachingAssignment(@NonNull Vertex declaration, @NonNull Vertex vertex) {
+		return assignments.computeIfAbsent(declaration.id(), id -> computeReachingAssignments(declaration)).get(vertex.id());
+	}
+
+	/**
+	 * @param definition an assignment or declaration vertex
+	 * @return the cached value of the definition, or null if it has not been resolved yet
+	 */
+	@Nullable
+	Optional<ConstantValue> getValue(@NonNull Vertex definition) {
+		return values.get(definition.id());
+	}
+
+	void putValue(@NonNull Vertex definition, @NonNull Optional<ConstantValue> value) {
+		values.put(definition.id(), value);
+	}
+
+	private static Map<Object, Vertex> computeReachingAssignments(@NonNull Vertex declaration) {
+		Map<Object, Vertex> reaching = new HashMap<>();
+		Deque<Vertex> worklist = new ArrayDeque<>();
+
+		Iterator<Vertex> references = declaration.vertices(Direction.IN, REFERS_TO);
+		while (references.hasNext()) {
+			Vertex reference = references.next();
+			Iterator<Vertex> assignees = reference.vertices(Direction.OUT, REFERS_TO);
+			if (!assignees.hasNext() || !assignees.next().equals(declaration)) {
+				continue;
+			}
+			Iterator<Vertex> operators = reference.vertices(Direction.IN, "LHS");
+			while (operators.hasNext()) {
+				Vertex operator = operators.next();
+				if (isAssignmentTo(operator, reference) && reaching.putIfAbsent(operator.id(), operator) == null) {
+					worklist.add(operator);
+				}
+			}
+		}
+
+		// breadth-first, so that each vertex is reached by its closest assignment first
+		while (!worklist.isEmpty()) {
+			Vertex v = worklist.poll();
+			if (v.equals(declaration)) {
+				// the backward walk stops at the declaration
+				continue;
+			}
+			Vertex assignment = reaching.get(v.id());
+			Iterator<Vertex> successors = v.vertices(Direction.OUT, EOG);
+			while (successors.hasNext()) {
+				Vertex next = successors.next();
+				if (reaching.putIfAbsent(next.id(), assignment) == null) {
+					worklist.add(next);
+				}
+			}
+		}
+		return reaching;
+	}
+
+	private static boolean isAssignmentTo(@NonNull Vertex operator, @NonNull Vertex reference) {
+		if (!operator.label().contains(BinaryOperator.class.getSimpleName()) || !"=".equals(operator.property("operatorCode").orElse(null))) {
+			return false;
+		}
+		Iterator<Vertex> lhs = operator.vertices(Direction.OUT, "LHS");
+		return lhs.hasNext() && lhs.next().equals(reference);
+	}
+}
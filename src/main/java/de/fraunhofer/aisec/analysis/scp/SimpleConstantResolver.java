@@ -4,9 +4,7 @@ package de.fraunhofer.aisec.analysis.scp;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.utils.Utils;
 import de.fraunhofer.aisec.cpg.graph.Node;
-import de.fraunhofer.aisec.cpg.graph.declarations.ValueDeclaration;
 import de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration;
-import de.fraunhofer.aisec.cpg.graph.statements.expressions.BinaryOperator;
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.CallExpression;
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.ConstructExpression;
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.DeclaredReferenceExpression;
@@ -16,8 +14,6 @@ import de.fraunhofer.aisec.cpg.graph.statements.expressions.Literal;
 import de.fraunhofer.aisec.crymlin.ConstantResolver;
 import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
 import de.fraunhofer.aisec.crymlin.connectors.db.Database;
-import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
-import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
@@ -32,6 +28,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.REFERS_TO;
+
 /**
  * A simple intraprocedural resolution of constant values.
  */
@@ -65,24 +63,24 @@ public class SimpleConstantResolver implements ConstantResolver {
 	 * 7. {no interjacent assignment} determine value of variableDeclarationVertex (e.g. from its initializer)
 	 * <p>
 	 * 8. {no initializer with value e.g. function argument} continue traversing the graph
+	 * <p>
+	 * Steps 1-4 are answered by {@link ReachingDefinitions}, which computes the closest assignment for all references to a variable at once.
 	 *
 	 * @param declRefExpr The DeclaredReferenceExpression that will be resolved.
 	 */
 	@NonNull
 	public Set<ConstantValue> resolveConstantValues(@NonNull DeclaredReferenceExpression declRefExpr) {
 		Set<ConstantValue> result = new HashSet<>();
-		Set<ValueDeclaration> declarations = CrymlinQueryWrapper.getDeclarationSites(db, declRefExpr);
-
-		try (TraversalConnection conn = new TraversalConnection(db)) {
-			CrymlinTraversalSource t = conn.getCrymlinTraversal();
-			for (ValueDeclaration decl : declarations) {
-				Vertex vDecl = t.byID(decl.getId()).tryNext().orElseThrow();
-				Vertex vExpr = t.byID(declRefExpr.getId())
-						.tryNext()
-						.orElseThrow();
-				Optional<ConstantValue> val = resolveConstantValueOfFunctionArgument(vDecl, vExpr);
-				val.ifPresent(result::add);
-			}
+
+		Iterator<Vertex> exprs = db.getGraph().vertices(declRefExpr.getId());
+		if (!exprs.hasNext()) {
+			return result;
+		}
+		Vertex vExpr = exprs.next();
+		Iterator<Vertex> declarations = vExpr.vertices(Direction.OUT, REFERS_TO);
+		while (declarations.hasNext()) {
+			Optional<ConstantValue> val = resolveConstantValueOfFunctionArgument(declarations.next(), vExpr);
+			val.ifPresent(result::add);
 		}
 
 		return result;
@@ -93,116 +91,99 @@ public class SimpleConstantResolver implements ConstantResolver {
 			return Optional.empty();
 		}
 
-		Optional<ConstantValue> retVal = Optional.empty();
-
 		log.debug("Vertex for function call: {}", vDeclaredReferenceExpr.property("code").value());
 		log.debug("Vertex of variable declaration: {}", variableDeclarationVertex.property("code").value());
 
-		HashSet<Vertex> workList = new HashSet<>();
-		HashSet<Vertex> seen = new HashSet<>();
+		ReachingDefinitions reachingDefinitions = ReachingDefinitions.of(db.getGraph());
+		Vertex assignment = reachingDefinitions.getReachingAssignment(variableDeclarationVertex, vDeclaredReferenceExpr);
+		Vertex definition = assignment != null ? assignment : variableDeclarationVertex;
 
-		workList.add(vDeclaredReferenceExpr);
+		Optional<ConstantValue> retVal = reachingDefinitions.getValue(definition);
+		if (retVal == null) {
+			retVal = assignment != null ? resolveAssignment(assignment) : resolveInitializer(variableDeclarationVertex);
+			reachingDefinitions.putValue(definition, retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Resolves the value assigned to a variable by an assignment, i.e. a BinaryOperator{operatorCode: "="}.
+	 *
+	 * @param assignment
+	 * @return
+	 */
+	private Optional<ConstantValue> resolveAssignment(@NonNull Vertex assignment) {
+		log.debug("   LHS of this node is interesting. Will evaluate RHS: {}", assignment.property("code").value());
+		Vertex rhs = assignment.vertices(Direction.OUT, "RHS")
+				.next();
 
-		while (!workList.isEmpty()) {
-			HashSet<Vertex> nextWorklist = new HashSet<>();
+		boolean isRhsLiteral = rhs.label().equals(Literal.class.getSimpleName());
+		boolean isRhsExpressionList = rhs.label().equals(ExpressionList.class.getSimpleName());
 
-			for (Vertex tVertex : workList) {
-				if (seen.contains(tVertex)) {
-					continue;
+		if (isRhsLiteral) {
+			Object literalValue = rhs.property("value").orElse(null);
+
+			Optional<ConstantValue> constantValue = ConstantValue.tryOf(literalValue);
+			if (constantValue.isPresent()) {
+				return constantValue;
+			}
+
+			log.warn("Unknown literal type encountered: {} (value: {})", literalValue.getClass(), literalValue);
+		} else if (isRhsExpressionList
+				&& rhs.edges(Direction.IN, "EOG").hasNext()) {
+			// C/C++ assigns last expression in list.
+			Vertex lastExpressionInList = rhs.edges(Direction.IN, "EOG")
+					.next()
+					.outVertex();
+
+			if (Utils.hasLabel(lastExpressionInList, Literal.class)) {
+				// If last expression is Literal --> assign its value immediately.
+				Object literalValue = lastExpressionInList.property("value").orElse(null);
+				Optional<ConstantValue> constantValue = ConstantValue.tryOf(literalValue);
+				if (constantValue.isPresent()) {
+					return constantValue;
 				}
-				seen.add(tVertex);
-
-				boolean isBinaryOperatorVertex = tVertex.label().contains(BinaryOperator.class.getSimpleName());
-
-				Iterator<Vertex> lhsVertices = tVertex.vertices(Direction.OUT, "LHS");
-
-				if (isBinaryOperatorVertex
-						&& "=".equals(tVertex.property("operatorCode").value())
-						&& lhsVertices.hasNext()) {
-					// this is an assignment that may set the value of our operand
-					Vertex lhs = lhsVertices.next();
-
-					Iterator<Vertex> assignees = lhs.vertices(Direction.OUT, "REFERS_TO");
-					if (assignees.hasNext() && assignees
-							.next()
-							.id()
-							.equals(variableDeclarationVertex.id())) {
-						log.debug("   LHS of this node is interesting. Will evaluate RHS: {}", tVertex.property("code").value());
-						Vertex rhs = tVertex.vertices(Direction.OUT, "RHS")
-								.next();
-
-						boolean isRhsLiteral = rhs.label().equals(Literal.class.getSimpleName());
-						boolean isRhsExpressionList = rhs.label().equals(ExpressionList.class.getSimpleName());
-
-						if (isRhsLiteral) {
-							Object literalValue = rhs.property("value").orElse(null);
-
-							Optional<ConstantValue> constantValue = ConstantValue.tryOf(literalValue);
-							if (constantValue.isPresent()) {
-								return constantValue;
-							}
-
-							log.warn("Unknown literal type encountered: {} (value: {})", literalValue.getClass(), literalValue);
-						} else if (isRhsExpressionList
-								&& rhs.edges(Direction.IN, "EOG").hasNext()) {
-							// C/C++ assigns last expression in list.
-							Vertex lastExpressionInList = rhs.edges(Direction.IN, "EOG")
-									.next()
-									.outVertex();
-
-							if (Utils.hasLabel(lastExpressionInList, Literal.class)) {
-								// If last expression is Literal --> assign its value immediately.
-								Object literalValue = lastExpressionInList.property("value").orElse(null);
-								Optional<ConstantValue> constantValue = ConstantValue.tryOf(literalValue);
-								if (constantValue.isPresent()) {
-									return constantValue;
-								}
-								log.warn("Unknown literal type encountered: {} (value: {})", literalValue.getClass(), literalValue);
-							} else if (lastExpressionInList.label().equals(DeclaredReferenceExpression.class.getSimpleName())) {
-								// Get declaration of the variable used as last item in expression list
-								Iterator<Edge> refersTo = lastExpressionInList.edges(Direction.IN, "DFG");
-								if (refersTo.hasNext()) {
-									Vertex v = refersTo.next().outVertex();
-									if (v.label().equals(VariableDeclaration.class.getSimpleName())) {
-										SimpleConstantResolver resolver = new SimpleConstantResolver(db);
-										Optional<ConstantValue> constantValue = resolver.resolveConstantValueOfFunctionArgument(v, lastExpressionInList);
-										if (constantValue.isPresent()) {
-											return constantValue;
-										}
-									} else if (v.label().equals(Literal.class.getSimpleName())) {
-										Object literalValue = v.property("value").orElse(null);
-										Optional<ConstantValue> constantValue = ConstantValue.tryOf(literalValue);
-										if (constantValue.isPresent()) {
-											return constantValue;
-										}
-									} else {
-										log.warn("Last expression in ExpressionList does not have a VariableDeclaration. Cannot resolve its value: {}",
-											lastExpressionInList.property("code").value());
-									}
-								} else {
-									log.warn("Last expression in ExpressionList has no incoming DFG. Cannot resolve its value: {}",
-										lastExpressionInList.property("code").value());
-								}
-							}
+				log.warn("Unknown literal type encountered: {} (value: {})", literalValue.getClass(), literalValue);
+			} else if (lastExpressionInList.label().equals(DeclaredReferenceExpression.class.getSimpleName())) {
+				// Get declaration of the variable used as last item in expression list
+				Iterator<Edge> refersTo = lastExpressionInList.edges(Direction.IN, "DFG");
+				if (refersTo.hasNext()) {
+					Vertex v = refersTo.next().outVertex();
+					if (v.label().equals(VariableDeclaration.class.getSimpleName())) {
+						Optional<ConstantValue> constantValue = resolveConstantValueOfFunctionArgument(v, lastExpressionInList);
+						if (constantValue.isPresent()) {
+							return constantValue;
 						}
-						log.error("Value of operand set in assignment expression");
-						return Optional.empty();
-					}
-				}
-				if (tVertex != variableDeclarationVertex) { // stop once we are at the declaration
-					Iterator<Edge> eog = tVertex.edges(Direction.IN, "EOG");
-					while (eog.hasNext()) {
-						Vertex vertex = eog.next().outVertex();
-						if (!seen.contains(vertex)) {
-							nextWorklist.add(vertex);
+					} else if (v.label().equals(Literal.class.getSimpleName())) {
+						Object literalValue = v.property("value").orElse(null);
+						Optional<ConstantValue> constantValue = ConstantValue.tryOf(literalValue);
+						if (constantValue.isPresent()) {
+							return constantValue;
 						}
+					} else {
+						log.warn("Last expression in ExpressionList does not have a VariableDeclaration. Cannot resolve its value: {}",
+							lastExpressionInList.property("code").value());
 					}
+				} else {
+					log.warn("Last expression in ExpressionList has no incoming DFG. Cannot resolve its value: {}",
+						lastExpressionInList.property("code").value());
 				}
 			}
-			workList = nextWorklist;
 		}
+		log.error("Value of operand set in assignment expression");
+		return Optional.empty();
+	}
+
+	/**
+	 * Resolves the value of a variable from the initializer of its declaration.
+	 *
+	 * @param variableDeclarationVertex
+	 * @return
+	 */
+	private Optional<ConstantValue> resolveInitializer(@NonNull Vertex variableDeclarationVertex) {
+		Optional<ConstantValue> retVal = Optional.empty();
 
-		// we arrived at the declaration of the variable. See if we have an initializer
+		// See if the declaration has an initializer
 		Iterator<Vertex> itInitializerVertex = variableDeclarationVertex.vertices(Direction.OUT, "INITIALIZER");
 
 		if (itInitializerVertex.hasNext()) {
@@ -23,9 +23,11 @@ import de.fraunhofer.aisec.cpg.passes.TypeResolver;
 import de.fraunhofer.aisec.cpg.passes.VariableUsageResolver;
 import de.fraunhofer.aisec.crymlin.builtin.Builtin;
 import de.fraunhofer.aisec.crymlin.builtin.BuiltinRegistry;
+import de.fraunhofer.aisec.crymlin.connectors.db.AstIndex;
 import de.fraunhofer.aisec.crymlin.connectors.db.Database;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
 import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
+import de.fraunhofer.aisec.crymlin.connectors.db.VertexIndex;
 import de.fraunhofer.aisec.crymlin.connectors.lsp.CpgLanguageServer;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import de.fraunhofer.aisec.mark.XtextParser;
@@ -233,8 +235,8 @@ public class AnalysisServer {
 					analysisContext -> {
 						Benchmark bench = new Benchmark(AnalysisServer.class, "  Filtering results");
 						if (config.disableGoodFindings) {
-							// Filter out "positive" results
-							analysisContext.getFindings().removeIf(finding -> !finding.isProblem());
+							// Filter out "positive" results, but keep inconclusive ones
+							analysisContext.getFindings().removeIf(finding -> !finding.isProblem() && !finding.isInconclusive());
 						}
 						bench.stop();
 						return analysisContext;
@@ -447,6 +449,12 @@ public class AnalysisServer {
 		// Persist the result
 		db.saveAll(result.getTranslationUnits());
 
+		// index the enclosing function, record and file of all AST vertices
+		AstIndex.build(db.getGraph());
+
+		// index all vertices by label and name, to answer the start steps of traversals
+		VertexIndex.build(db.getGraph());
+
 		long duration = bench.stop();
 		// connect to DB
 		try (TraversalConnection t = new TraversalConnection(db)) {
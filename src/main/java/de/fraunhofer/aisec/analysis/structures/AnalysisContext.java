@@ -1,22 +1,49 @@
 
 package de.fraunhofer.aisec.analysis.structures;
 
+import de.fraunhofer.aisec.analysis.wpds.CallGraph;
+import de.fraunhofer.aisec.analysis.wpds.FunctionRules;
+import de.fraunhofer.aisec.analysis.wpds.StmtValFactory;
 import de.fraunhofer.aisec.cpg.graph.Node;
 import de.fraunhofer.aisec.crymlin.connectors.db.Database;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.io.File;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 public class AnalysisContext {
 
-	/** List of violations of MARK rules. the region, etc. */
+	/** List of violations of MARK rules. the region, etc. Rules may be evaluated in parallel, so this set is thread-safe. */
 	@NonNull
-	private final Set<Finding> findings = new HashSet<>();
+	private final Set<Finding> findings = ConcurrentHashMap.newKeySet();
+
+	/** Statistics about the evaluation of each MARK rule. */
+	@NonNull
+	private final List<RuleProfile> ruleProfiles = new CopyOnWriteArrayList<>();
+
+	/** WPDS rules of each function (by vertex id), shared by the typestate analyses of all contexts and rules. */
+	@NonNull
+	private final Map<Object, FunctionRules> wpdsFunctionRules = new ConcurrentHashMap<>();
+
+	/** Interned statements and values of the WPDS rules of this analysis. */
+	@NonNull
+	private final StmtValFactory stmtValFactory = new StmtValFactory();
+
+	/** Call graph of the program, created on first use. */
+	@Nullable
+	private CallGraph callGraph;
+
+	/** Workers creating WPDS rules, shared by the typestate analyses of all contexts and rules. Created on first use. */
+	@Nullable
+	private ForkJoinPool wpdsWorkers;
 
 	/** Map of method signatures to {@code Method}s. */
 	public final Map<String, Method> methods = new HashMap<>();
@@ -47,6 +74,65 @@ public class AnalysisContext {
 		return this.findings;
 	}
 
+	/**
+	 * Returns the profiles of all evaluated MARK rules.
+	 *
+	 * @return
+	 */
+	public @NonNull List<RuleProfile> getRuleProfiles() {
+		return this.ruleProfiles;
+	}
+
+	/**
+	 * Returns the cached WPDS rules of all functions, keyed by the id of the function vertex.
+	 *
+	 * @return
+	 */
+	public @NonNull Map<Object, FunctionRules> getWpdsFunctionRules() {
+		return this.wpdsFunctionRules;
+	}
+
+	public @NonNull StmtValFactory getStmtValFactory() {
+		return this.stmtValFactory;
+	}
+
+	/**
+	 * Returns the call graph of the program. The call graph is created once by the given supplier.
+	 *
+	 * @param supplier
+	 * @return
+	 */
+	public synchronized @NonNull CallGraph getCallGraph(@NonNull Supplier<CallGraph> supplier) {
+		if (this.callGraph == null) {
+			this.callGraph = supplier.get();
+		}
+		return this.callGraph;
+	}
+
+	/**
+	 * Returns the pool of workers creating WPDS rules. The pool is created once, with the given parallelism, and is shut down by
+	 * {@link #shutdownWorkers()}.
+	 *
+	 * @param parallelism
+	 * @return
+	 */
+	public synchronized @NonNull ForkJoinPool getWpdsWorkers(int parallelism) {
+		if (this.wpdsWorkers == null) {
+			this.wpdsWorkers = new ForkJoinPool(parallelism);
+		}
+		return this.wpdsWorkers;
+	}
+
+	/**
+	 * Shuts down the workers of this analysis, if any have been created.
+	 */
+	public synchronized void shutdownWorkers() {
+		if (this.wpdsWorkers != null) {
+			this.wpdsWorkers.shutdownNow();
+			this.wpdsWorkers = null;
+		}
+	}
+
 	public List<File> getSourceLocations() {
 		return sourceLocations;
 	}
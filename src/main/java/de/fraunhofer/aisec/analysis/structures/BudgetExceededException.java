@@ -0,0 +1,23 @@
+package de.fraunhofer.aisec.analysis.structures;
+
+/**
+ * Thrown by {@link EvaluationBudget} to cooperatively cancel the evaluation of a rule (or of a single context of a rule) which exceeded its budget.
+ *
+ * This exception is expected to be caught by the {@link de.fraunhofer.aisec.analysis.markevaluation.Evaluator}, which reports the rule (or context) as inconclusive.
+ */
+public class BudgetExceededException extends RuntimeException {
+
+	private final boolean contextScoped;
+
+	public BudgetExceededException(String s, boolean contextScoped) {
+		super(s);
+		this.contextScoped = contextScoped;
+	}
+
+	/**
+	 * @return true, if only the currently evaluated context exceeded its budget, false if the budget of the whole rule is exhausted
+	 */
+	public boolean isContextScoped() {
+		return contextScoped;
+	}
+}
@@ -0,0 +1,125 @@
+package de.fraunhofer.aisec.analysis.structures;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the work spent on the evaluation of a single MARK rule.
+ * <p>
+ * The wall time is limited per rule, visited EOG nodes and created WPDS rules are limited per context. Evaluators cooperatively check the budget
+ * while they work, which throws a {@link BudgetExceededException} as soon as a limit is exceeded. A limit &lt;= 0 means unlimited.
+ * <p>
+ * Workers helping with the evaluation of a context (e.g. creating WPDS rules in parallel) join the context of the thread they work for
+ * (see {@link #joinContext(ContextCounters)}), so that their work counts against the budget of that context.
+ */
+public class EvaluationBudget {
+
+	/** Check the clock only every n-th visited EOG node. */
+	private static final long TIME_CHECK_INTERVAL = 1024;
+
+	private final long timeoutMillis;
+	private final long deadline;
+	private final long maxEogNodesPerContext;
+	private final long maxWpdsRulesPerContext;
+
+	// counters of the context currently evaluated by each thread, as contexts may be evaluated in parallel
+	private final ThreadLocal<ContextCounters> contextCounters = ThreadLocal.withInitial(ContextCounters::new);
+	private final AtomicLong totalEogNodes = new AtomicLong();
+
+	/**
+	 * Creates a new budget. The wall time starts running immediately.
+	 *
+	 * @param timeoutMillis          maximum wall time for the rule
+	 * @param maxEogNodesPerContext  maximum number of EOG nodes visited in one context
+	 * @param maxWpdsRulesPerContext maximum number of WPDS rules created in one context
+	 */
+	public EvaluationBudget(long timeoutMillis, long maxEogNodesPerContext, long maxWpdsRulesPerContext) {
+		this.timeoutMillis = timeoutMillis;
+		this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis));
+		this.maxEogNodesPerContext = maxEogNodesPerContext;
+		this.maxWpdsRulesPerContext = maxWpdsRulesPerContext;
+	}
+
+	public static EvaluationBudget unlimited() {
+		return new EvaluationBudget(0, 0, 0);
+	}
+
+	/**
+	 * Resets the per-context limits. Called whenever the evaluation of a new context starts in the current thread.
+	 */
+	public void startContext() {
+		contextCounters.set(new ContextCounters());
+	}
+
+	/**
+	 * Returns the counters of the context evaluated by the current thread, to be shared with workers via {@link #joinContext(ContextCounters)}.
+	 *
+	 * @return
+	 */
+	public ContextCounters getContextCounters() {
+		return contextCounters.get();
+	}
+
+	/**
+	 * Lets the current thread account its work to the given counters of a context, which is evaluated by another thread.
+	 *
+	 * @param counters
+	 */
+	public void joinContext(ContextCounters counters) {
+		contextCounters.set(counters);
+	}
+
+	/**
+	 * Checks whether the wall time of the rule is exceeded, or the evaluation was interrupted.
+	 */
+	public void checkTime() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new BudgetExceededException("evaluation was interrupted", false);
+		}
+		if (timeoutMillis > 0 && System.nanoTime() - deadline > 0) {
+			throw new BudgetExceededException(String.format("time budget of %d ms exceeded", timeoutMillis), false);
+		}
+	}
+
+	/**
+	 * Accounts for one visited EOG node in the current context.
+	 */
+	public void visitEogNode() {
+		totalEogNodes.incrementAndGet();
+		long visited = contextCounters.get().eogNodes.incrementAndGet();
+		if (maxEogNodesPerContext > 0 && visited > maxEogNodesPerContext) {
+			throw new BudgetExceededException(String.format("more than %d EOG nodes visited", maxEogNodesPerContext), true);
+		}
+		if (visited % TIME_CHECK_INTERVAL == 0) {
+			checkTime();
+		}
+	}
+
+	/**
+	 * @return number of EOG nodes visited in all contexts
+	 */
+	public long getTotalEogNodes() {
+		return totalEogNodes.get();
+	}
+
+	/**
+	 * Accounts for <code>count</code> WPDS rules created in the current context.
+	 *
+	 * @param count
+	 */
+	public void addWpdsRules(long count) {
+		long created = contextCounters.get().wpdsRules.addAndGet(count);
+		if (maxWpdsRulesPerContext > 0 && created > maxWpdsRulesPerContext) {
+			throw new BudgetExceededException(String.format("more than %d WPDS rules created", maxWpdsRulesPerContext), true);
+		}
+		checkTime();
+	}
+
+	/**
+	 * Work done in a single context, possibly by several threads.
+	 */
+	public static final class ContextCounters {
+		private final AtomicLong eogNodes = new AtomicLong();
+		private final AtomicLong wpdsRules = new AtomicLong();
+	}
+}
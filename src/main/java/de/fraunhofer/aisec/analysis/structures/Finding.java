@@ -26,6 +26,12 @@ public class Finding {
 	 */
 	private boolean isProblem = true;
 
+	/**
+	 * True, if the rule could not be evaluated completely (e.g., because it exceeded its budget). Inconclusive findings neither indicate a problem nor
+	 * confirm that the code is correct.
+	 */
+	private boolean isInconclusive = false;
+
 	private String logMsg;
 	@NonNull
 	private List<PhysicalLocation> locations = new ArrayList<>();
@@ -71,6 +77,21 @@ public class Finding {
 		this.isProblem = isProblem;
 	}
 
+	/**
+	 * Creates a Finding stating that a rule could not be evaluated completely.
+	 *
+	 * @param logMsg Log message for that specific finding, should contain the reason why the rule is inconclusive.
+	 * @param artifactUri Absolute URI of the source file, if known.
+	 * @param onfailIdentifier Identifier of the generic finding, as given by the "onfail" construct of the MARK rule.
+	 * @param ranges List of LSP "ranges" determining the position(s) in code of this finding.
+	 * @return
+	 */
+	public static Finding inconclusive(String logMsg, @Nullable URI artifactUri, String onfailIdentifier, List<Region> ranges) {
+		Finding f = new Finding(logMsg, artifactUri, onfailIdentifier, ranges, false);
+		f.isInconclusive = true;
+		return f;
+	}
+
 	public String getLogMsg() {
 		return logMsg;
 	}
@@ -79,6 +100,10 @@ public class Finding {
 		return isProblem;
 	}
 
+	public boolean isInconclusive() {
+		return isInconclusive;
+	}
+
 	/**
 	 * Returns an unmodifiable list of the associated LSP "ranges" (~regions).
 	 */
@@ -151,6 +176,10 @@ public class Finding {
 			lines = "[" + locations.stream().map(loc -> "" + (loc.getRegion().getStartLine() + 1)).sorted().distinct().collect(Collectors.joining(", ")) + "]";
 		}
 
-		out.println(lines + ": " + (isProblem ? "(BAD)  " : "(GOOD) ") + shortMsg + ": " + logMsg);
+		String verdict = isProblem ? "(BAD)  " : "(GOOD) ";
+		if (isInconclusive) {
+			verdict = "(INCONCLUSIVE) ";
+		}
+		out.println(lines + ": " + verdict + shortMsg + ": " + logMsg);
 	}
 }
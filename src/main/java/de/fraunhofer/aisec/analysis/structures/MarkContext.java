@@ -8,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,12 +16,21 @@ public class MarkContext {
 	private static final Logger log = LoggerFactory.getLogger(MarkContext.class);
 
 	private CPGInstanceContext instances = null;
-	private Map<String, CPGVertexWithValue> operands = new HashMap<>();
+	// operands sorted by name and their values. The arrays are never modified but replaced when an operand is set (copy-on-write),
+	// so copies of a context can share them.
+	private String[] operandNames = new String[0];
+	private CPGVertexWithValue[] operandValues = new CPGVertexWithValue[0];
 	private boolean findingAlreadyAdded = false;
 
+	/**
+	 * Creates a copy of <code>other</code> in O(1). The copy shares all operands with <code>other</code>, operands set afterwards are only
+	 * visible in the context they were set in. Looking up an operand takes O(log n), setting one O(n) for n operands of a context.
+	 *
+	 * @param other
+	 */
 	public MarkContext(MarkContext other) {
-		// shallow copy
-		other.operands.forEach(operands::put);
+		operandNames = other.operandNames;
+		operandValues = other.operandValues;
 		instances = other.instances;
 	}
 
@@ -39,11 +49,42 @@ public class MarkContext {
 	}
 
 	public void setOperand(String operand, CPGVertexWithValue value) {
-		operands.put(operand, value);
+		int i = Arrays.binarySearch(operandNames, operand);
+		if (i >= 0) {
+			// the names are unchanged and remain shared
+			operandValues = operandValues.clone();
+			operandValues[i] = value;
+			return;
+		}
+		int insert = -i - 1;
+		String[] names = new String[operandNames.length + 1];
+		CPGVertexWithValue[] values = new CPGVertexWithValue[operandValues.length + 1];
+		System.arraycopy(operandNames, 0, names, 0, insert);
+		System.arraycopy(operandValues, 0, values, 0, insert);
+		names[insert] = operand;
+		values[insert] = value;
+		System.arraycopy(operandNames, insert, names, insert + 1, operandNames.length - insert);
+		System.arraycopy(operandValues, insert, values, insert + 1, operandValues.length - insert);
+		operandNames = names;
+		operandValues = values;
 	}
 
 	public CPGVertexWithValue getOperand(String operand) {
-		return operands.get(operand);
+		int i = Arrays.binarySearch(operandNames, operand);
+		return i >= 0 ? operandValues[i] : null;
+	}
+
+	/**
+	 * Returns the current value of all operands of this context.
+	 *
+	 * @return
+	 */
+	public Map<String, CPGVertexWithValue> getOperands() {
+		Map<String, CPGVertexWithValue> result = new HashMap<>();
+		for (int i = 0; i < operandNames.length; i++) {
+			result.put(operandNames[i], operandValues[i]);
+		}
+		return result;
 	}
 
 	public boolean isFindingAlreadyAdded() {
@@ -68,12 +109,11 @@ public class MarkContext {
 				} else {
 					out.println("  MARK instance " + instance + " <null>");
 				}
-				for (Map.Entry<String, CPGVertexWithValue> op : operands.entrySet()) {
+				for (Map.Entry<String, CPGVertexWithValue> op : getOperands().entrySet()) {
 					out.println("     " + op.getKey() + " : " + op.getValue().getValue() + " base: " + Utils.prettyPrint(op.getValue().getBase()) + " resp. vertices: "
 							+ Utils.prettyPrint(op.getValue().getValue().getResponsibleVertices()));
 				}
 			}
 		}
 	}
-
 }
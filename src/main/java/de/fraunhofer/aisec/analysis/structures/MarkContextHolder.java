@@ -1,17 +1,26 @@
 
 package de.fraunhofer.aisec.analysis.structures;
 
+import de.fraunhofer.aisec.analysis.wpds.TransitionIndex;
+import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
+import de.fraunhofer.aisec.markmodel.MOp;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 // A MarkContextHolder contains:
 //
@@ -19,16 +28,29 @@ import java.util.Set;
 //      - Each "MarkContext" contains a possible mapping from MARK instances to MARK entities ("CPGInstanceContext").
 // - "resolved operands": A set of Mark Operands (t.foo, cm.algorithm). This Operand is already analysed _for all Contexts_,
 //      the actual values/vertices for the operand are stored in the MarkContext
-// - "copyStack": If a context is a copy of another context (can e.g. happen if a constant resolving returns multiple values),
-//      this stack stores the origin of the copy. This is required, if we need to compare MarkIntermediateResult which might not have all contexts filled:
+// - "origins": If a context is a copy of another context (can e.g. happen if a constant resolving returns multiple values),
+//      this stores the origin of the copy. This is required, if we need to compare MarkIntermediateResult which might not have all contexts filled:
 //      I.e., during evaluation of an expression, we first evaluate the left part of the expression-tree, then the right part.
 //      If the left part e.g. returns a result for the contexts 1 and 2, the right part of the result might create a copy one context (e.g. context 2),
 //      and e.g. return results for context 1, 2 and 3. Since we might have to compare all contexts, we need to remember that we need to compare
 //      result 3 from the right side with the result 2 from the left side.
-//		copyStack is a map from a context_id to a list of contexts_ids, where the right side are the contexts this was copied from.
-//		The last entry of the right side list is the most recently added one.
+//		origins is a map from a context_id to an immutable, shared chain of the contexts_ids this context was copied from,
+//		starting with the most recent one. Copying a context only prepends one element to the chain of its origin.
 // - "createFindingsDuringEvaluation": Indicates, if the analysis should create findings directly. This is currently only
 //      used to tell the order-evaluation to not create a finding if it occurs in the when-part of a rule.
+// - "maxContexts": Upper bound for the number of contexts (0 for no limit). If an operand resolves to more values than contexts can be
+//      created, the remaining values are dropped and "fanOutLimitReached" is set, so the caller can report that the results are incomplete.
+//
+// - "budget": Limits the work spent on the rule. Contexts which exceeded their part of the budget are kept in "inconclusiveContexts", together
+//      with the reason, and are reported as inconclusive instead of violated or verified.
+//
+// - "orderResults": Results of order expressions, evaluated once per function for all bases (see OrderFunctionResult). Each context
+//      is answered from the result of the function containing its instance, so the EOG of a function is walked only once per rule.
+//
+// When an operand is resolved for a context, values which are equivalent (same vertex, same base, same value) are merged before the
+// context is copied, so that a context is not copied for values it cannot tell apart. This only applies to the copies of one context:
+// contexts created from different instance contexts stay separate, even if they lead to the same finding. Such findings are equal and
+// are merged when the findings of the rule are collected.
 public class MarkContextHolder {
 
 	private static final Logger log = LoggerFactory.getLogger(MarkContextHolder.class);
@@ -36,14 +58,64 @@ public class MarkContextHolder {
 	private Map<Integer, MarkContext> contexts = new HashMap<>();
 	private int currentElements = 0;
 
+	private final int maxContexts;
+	private boolean fanOutLimitReached = false;
+	private int deduplicatedContexts = 0;
+
+	@NonNull
+	private final EvaluationBudget budget;
+	private final Map<Integer, String> inconclusiveContexts = new HashMap<>();
+
+	@NonNull
+	private final RuleProfile profile;
+
+	public MarkContextHolder() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxContexts maximum number of contexts this holder will create, 0 for no limit
+	 */
+	public MarkContextHolder(int maxContexts) {
+		this(maxContexts, EvaluationBudget.unlimited(), new RuleProfile("<unnamed>"));
+	}
+
+	/**
+	 * @param maxContexts maximum number of contexts this holder will create, 0 for no limit
+	 * @param budget      budget for evaluating the rule of this holder
+	 * @param profile     profile collecting statistics about the evaluation of the rule of this holder
+	 */
+	public MarkContextHolder(int maxContexts, @NonNull EvaluationBudget budget, @NonNull RuleProfile profile) {
+		this.maxContexts = maxContexts > 0 ? maxContexts : Integer.MAX_VALUE;
+		this.budget = budget;
+		this.profile = profile;
+	}
+
 	private Set<String> resolvedOperands = new HashSet<>();
-	private Map<Integer, List<Integer>> copyStack = new HashMap<>();
+	private Map<Integer, ContextOrigin> origins = new HashMap<>();
 	private boolean createFindingsDuringEvaluation = true;
+	// order expression -> function vertex id -> result
+	private final Map<OrderExpression, Map<Object, OrderFunctionResult>> orderResults = new ConcurrentHashMap<>();
+	@Nullable
+	private Map<Vertex, MOp> orderVerticesToOp;
+	@Nullable
+	private TransitionIndex transitionIndex;
 
-	public void addInitialInstanceContext(CPGInstanceContext instance) {
+	/**
+	 * Adds a new context for the given instance context.
+	 *
+	 * @param instance
+	 * @return false, if the context was not added because the maximum number of contexts is reached
+	 */
+	public boolean addInitialInstanceContext(CPGInstanceContext instance) {
+		if (contexts.size() >= maxContexts) {
+			fanOutLimitReached = true;
+			return false;
+		}
 		MarkContext mk = new MarkContext();
 		mk.addInstanceContext(instance);
 		contexts.put(currentElements++, mk);
+		return true;
 	}
 
 	public MarkContext getContext(int id) {
@@ -97,10 +169,10 @@ public class MarkContextHolder {
 	public void addResolvedOperands(String operand, Map<Integer, List<CPGVertexWithValue>> operandVerticesForContext) {
 		resolvedOperands.add(operand);
 		final Map<Integer, MarkContext> toAdd = new HashMap<>();
-		final Map<Integer, List<Integer>> copyStackToAdd = new HashMap<>();
+		final Map<Integer, ContextOrigin> originsToAdd = new HashMap<>();
 
 		contexts.forEach((id, context) -> {
-			List<CPGVertexWithValue> operandVertices = operandVerticesForContext.get(id);
+			List<CPGVertexWithValue> operandVertices = deduplicate(operandVerticesForContext.get(id));
 			if (operandVertices == null || operandVertices.isEmpty()) {
 				log.warn("Did not find any vertices for {}, following evaluation will be imprecise", operand);
 				context.setOperand(operand, new CPGVertexWithValue(null,
@@ -108,15 +180,17 @@ public class MarkContextHolder {
 			} else if (operandVertices.size() == 1) {
 				context.setOperand(operand, operandVertices.get(0));
 			} else {
-				List<Integer> oldStack = copyStack.computeIfAbsent(id, x -> new ArrayList<>());
+				ContextOrigin origin = new ContextOrigin(id, origins.get(id));
 				for (int i = 1; i < operandVertices.size(); i++) {
-					MarkContext mk = new MarkContext(context); // create a shallow! copy
+					if (contexts.size() + toAdd.size() >= maxContexts) {
+						log.debug("Maximum number of {} contexts reached, dropping {} values of {}", maxContexts, operandVertices.size() - i, operand);
+						fanOutLimitReached = true;
+						break;
+					}
+					MarkContext mk = new MarkContext(context); // shares all operands with context
 					mk.setOperand(operand, operandVertices.get(i));
 					toAdd.put(currentElements, mk);
-
-					List<Integer> stackForNewContext = new ArrayList<>(oldStack);
-					stackForNewContext.add(id);
-					copyStackToAdd.put(currentElements, stackForNewContext);
+					originsToAdd.put(currentElements, origin);
 					currentElements++;
 				}
 				context.setOperand(operand, operandVertices.get(0)); // set the current one to the first value
@@ -124,15 +198,158 @@ public class MarkContextHolder {
 			}
 		});
 		contexts.putAll(toAdd);
-		copyStack.putAll(copyStackToAdd);
+		origins.putAll(originsToAdd);
 	}
 
+	/**
+	 * Removes equivalent entries (same argument vertex, same base, same value) from the values of an operand in a single context, keeping
+	 * the first occurrence.
+	 *
+	 * @param operandVertices
+	 * @return
+	 */
+	private List<CPGVertexWithValue> deduplicate(List<CPGVertexWithValue> operandVertices) {
+		if (operandVertices == null || operandVertices.size() < 2) {
+			return operandVertices;
+		}
+		Map<List<Object>, CPGVertexWithValue> unique = new LinkedHashMap<>();
+		for (CPGVertexWithValue vwv : operandVertices) {
+			List<Object> key = Arrays.asList(
+				vwv.getArgumentVertex() == null ? null : vwv.getArgumentVertex().id(),
+				vwv.getBase() == null ? null : vwv.getBase().id(),
+				vwv.getValue());
+			unique.putIfAbsent(key, vwv);
+		}
+		if (unique.size() < operandVertices.size()) {
+			deduplicatedContexts += operandVertices.size() - unique.size();
+			return new ArrayList<>(unique.values());
+		}
+		return operandVertices;
+	}
+
+	/**
+	 * @return true, if contexts (or values of operands) were dropped because the maximum number of contexts was reached
+	 */
+	public boolean isFanOutLimitReached() {
+		return fanOutLimitReached;
+	}
+
+	public int getMaxContexts() {
+		return maxContexts;
+	}
+
+	/**
+	 * @return the number of contexts which were not created, because they would have been equivalent to another copy of the same context
+	 */
+	public int getDeduplicatedContexts() {
+		return deduplicatedContexts;
+	}
+
+	@NonNull
+	public EvaluationBudget getBudget() {
+		return budget;
+	}
+
+	@NonNull
+	public RuleProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * @return number of contexts created so far, including removed ones
+	 */
+	public int getCreatedContexts() {
+		return currentElements;
+	}
+
+	/**
+	 * Returns the cached results of an order expression, keyed by the id of the function vertex.
+	 *
+	 * @param orderExpression
+	 * @return
+	 */
+	@NonNull
+	public Map<Object, OrderFunctionResult> getOrderResults(@NonNull OrderExpression orderExpression) {
+		return orderResults.computeIfAbsent(orderExpression, x -> new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * Returns the mapping from call vertices to the ops of the entities of the rule. The mapping is created once by the given supplier.
+	 *
+	 * @param supplier
+	 * @return
+	 */
+	@NonNull
+	public synchronized Map<Vertex, MOp> getOrderVerticesToOp(@NonNull Supplier<Map<Vertex, MOp>> supplier) {
+		if (orderVerticesToOp == null) {
+			orderVerticesToOp = supplier.get();
+		}
+		return orderVerticesToOp;
+	}
+
+	/**
+	 * Returns the index from call sites to the typestate transitions they trigger, used by the WPDS typestate analysis. The index is created
+	 * once by the given supplier.
+	 *
+	 * @param supplier
+	 * @return
+	 */
+	@NonNull
+	public synchronized TransitionIndex getTransitionIndex(@NonNull Supplier<TransitionIndex> supplier) {
+		if (transitionIndex == null) {
+			transitionIndex = supplier.get();
+		}
+		return transitionIndex;
+	}
+
+	/**
+	 * Marks a context as inconclusive, i.e., its evaluation was cancelled because it exceeded its budget.
+	 *
+	 * @param key
+	 * @param reason
+	 */
+	public void setInconclusive(int key, @NonNull String reason) {
+		inconclusiveContexts.put(key, reason);
+	}
+
+	/**
+	 * @return map from the ids of all inconclusive contexts to the reason why they are inconclusive
+	 */
+	public Map<Integer, String> getInconclusiveContexts() {
+		return inconclusiveContexts;
+	}
+
+	/**
+	 * Removes a context. A removed context is not considered anymore when operands are resolved or contexts are copied.
+	 *
+	 * @param key
+	 */
 	public void removeContext(Integer key) {
 		contexts.remove(key);
+		origins.remove(key);
 	}
 
-	public List<Integer> getCopyStack(Integer key) {
-		return copyStack.get(key);
+	/**
+	 * Returns the entry of <code>results</code> for the context <code>key</code>. If there is none, the entry of the context it was most recently
+	 * copied from is returned.
+	 *
+	 * @param results
+	 * @param key
+	 * @return the result, or null if neither the context nor any of its origins has a result
+	 */
+	@Nullable
+	public <T> T getResultOfContextOrOrigin(@NonNull Map<Integer, T> results, int key) {
+		T result = results.get(key);
+		if (result != null) {
+			return result;
+		}
+		for (ContextOrigin o = origins.get(key); o != null; o = o.parent) {
+			result = results.get(o.id);
+			if (result != null) {
+				return result;
+			}
+		}
+		return null;
 	}
 
 	public void setCreateFindingsDuringEvaluation(boolean b) {
@@ -153,4 +370,15 @@ public class MarkContextHolder {
 		}
 		out.println("===========================");
 	}
+
+	/** Immutable chain of the contexts a context was copied from, most recent first. */
+	private static final class ContextOrigin {
+		private final int id;
+		private final ContextOrigin parent;
+
+		private ContextOrigin(int id, ContextOrigin parent) {
+			this.id = id;
+			this.parent = parent;
+		}
+	}
 }
@@ -0,0 +1,99 @@
+package de.fraunhofer.aisec.analysis.structures;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of the evaluation of an order expression for all bases in one function.
+ * <p>
+ * The order of all bases in a function is evaluated in a single walk over the EOG of the function. Each context whose instance lives in this
+ * function is then answered from the results of the bases referencing its instance (and of bases without a reference, which cannot be told
+ * apart).
+ */
+public class OrderFunctionResult {
+
+	@NonNull
+	private final List<BaseResult> bases;
+
+	@Nullable
+	private final String cancelled;
+
+	private OrderFunctionResult(@NonNull List<BaseResult> bases, @Nullable String cancelled) {
+		this.bases = bases;
+		this.cancelled = cancelled;
+	}
+
+	public static OrderFunctionResult of(@NonNull List<BaseResult> bases) {
+		return new OrderFunctionResult(Collections.unmodifiableList(bases), null);
+	}
+
+	/**
+	 * Result for a function whose evaluation exceeded its budget.
+	 *
+	 * @param reason
+	 * @return
+	 */
+	public static OrderFunctionResult cancelled(@NonNull String reason) {
+		return new OrderFunctionResult(List.of(), reason);
+	}
+
+	@NonNull
+	public List<BaseResult> getBases() {
+		return bases;
+	}
+
+	public boolean isCancelled() {
+		return cancelled != null;
+	}
+
+	/**
+	 * @return the reason why the evaluation has been cancelled, or null
+	 */
+	@Nullable
+	public String getCancelReason() {
+		return cancelled;
+	}
+
+	/** Verdict and findings of a single base in the function. */
+	public static class BaseResult {
+		@Nullable
+		private final Object ref;
+		private boolean valid = true;
+		private final List<Finding> findings = new ArrayList<>();
+
+		/**
+		 * @param ref id of the declaration the base refers to, or null if the base does not refer to a declaration
+		 */
+		public BaseResult(@Nullable Object ref) {
+			this.ref = ref;
+		}
+
+		@Nullable
+		public Object getRef() {
+			return ref;
+		}
+
+		public boolean isValid() {
+			return valid;
+		}
+
+		/**
+		 * Adds a violation against the order by this base.
+		 *
+		 * @param finding
+		 */
+		public void addViolation(@NonNull Finding finding) {
+			valid = false;
+			findings.add(finding);
+		}
+
+		@NonNull
+		public List<Finding> getFindings() {
+			return findings;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package de.fraunhofer.aisec.analysis.structures;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics about the evaluation of a single MARK rule.
+ * <p>
+ * A profile is filled while the rule is evaluated (see {@link MarkContextHolder#getProfile()}) and collected in the {@link AnalysisContext}.
+ */
+public class RuleProfile {
+
+	@NonNull
+	private final String ruleName;
+
+	private long wallTimeNanos;
+	private int contexts;
+	private int evaluatedContexts;
+	private boolean inconclusive;
+	private final AtomicLong operandResolutions = new AtomicLong();
+	private final AtomicLong eogVertices = new AtomicLong();
+	private final AtomicLong dfgVertices = new AtomicLong();
+	private final AtomicLong wpdsFunctions = new AtomicLong();
+	private final AtomicLong wpdsPrunedFunctions = new AtomicLong();
+	// builtin name -> { number of calls, time in ns }
+	private final Map<String, long[]> builtins = new TreeMap<>();
+
+	public RuleProfile(@NonNull String ruleName) {
+		this.ruleName = ruleName;
+	}
+
+	@NonNull
+	public String getRuleName() {
+		return ruleName;
+	}
+
+	public long getWallTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(wallTimeNanos);
+	}
+
+	public void setWallTimeNanos(long wallTimeNanos) {
+		this.wallTimeNanos = wallTimeNanos;
+	}
+
+	/**
+	 * @param contexts          number of contexts created for the rule
+	 * @param evaluatedContexts number of contexts the ensure-part was evaluated for
+	 */
+	public void setContexts(int contexts, int evaluatedContexts) {
+		this.contexts = contexts;
+		this.evaluatedContexts = evaluatedContexts;
+	}
+
+	public void setInconclusive(boolean inconclusive) {
+		this.inconclusive = inconclusive;
+	}
+
+	public void addOperandResolution() {
+		operandResolutions.incrementAndGet();
+	}
+
+	public void addEogVertices(long count) {
+		eogVertices.addAndGet(count);
+	}
+
+	public void addDfgVertices(long count) {
+		dfgVertices.addAndGet(count);
+	}
+
+	/**
+	 * Accounts for the functions considered when creating a WPDS.
+	 *
+	 * @param translated number of functions turned into WPDS rules
+	 * @param pruned     number of functions pruned by slicing the call graph
+	 */
+	public void addWpdsFunctions(long translated, long pruned) {
+		wpdsFunctions.addAndGet(translated);
+		wpdsPrunedFunctions.addAndGet(pruned);
+	}
+
+	/**
+	 * Accounts for one call of a builtin.
+	 *
+	 * @param name  name of the builtin
+	 * @param nanos time spent in the call
+	 */
+	public synchronized void addBuiltinCall(@NonNull String name, long nanos) {
+		long[] stats = builtins.computeIfAbsent(name, x -> new long[2]);
+		stats[0]++;
+		stats[1] += nanos;
+	}
+
+	public synchronized JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("rule", ruleName);
+		json.put("wallTimeMs", getWallTimeMillis());
+		json.put("contexts", contexts);
+		json.put("evaluatedContexts", evaluatedContexts);
+		json.put("inconclusive", inconclusive);
+		json.put("operandResolutions", operandResolutions.get());
+		json.put("eogVerticesVisited", eogVertices.get());
+		json.put("dfgVerticesVisited", dfgVertices.get());
+		json.put("wpdsFunctions", wpdsFunctions.get());
+		json.put("wpdsPrunedFunctions", wpdsPrunedFunctions.get());
+		JSONObject jBuiltins = new JSONObject();
+		for (Map.Entry<String, long[]> entry : builtins.entrySet()) {
+			JSONObject jBuiltin = new JSONObject();
+			jBuiltin.put("calls", entry.getValue()[0]);
+			jBuiltin.put("timeMs", TimeUnit.NANOSECONDS.toMillis(entry.getValue()[1]));
+			jBuiltins.put(entry.getKey(), jBuiltin);
+		}
+		json.put("builtins", jBuiltins);
+		return json;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d ms, %d contexts, %d operand resolutions, %d EOG / %d DFG vertices visited", ruleName, getWallTimeMillis(), contexts,
+			operandResolutions.get(), eogVertices.get(), dfgVertices.get());
+	}
+}
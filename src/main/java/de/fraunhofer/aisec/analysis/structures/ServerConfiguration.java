@@ -47,6 +47,39 @@ public class ServerConfiguration {
 	 */
 	public final boolean disableOverflow;
 
+	/**
+	 * Maximum number of contexts (combinations of instances and operand values) evaluated for a single rule. Rules exceeding this
+	 * limit are evaluated on the first contexts only and reported as incomplete. 0 for no limit.
+	 */
+	public final int maxContextsPerRule;
+
+	/** Number of workers evaluating MARK rules in parallel. With 1, all rules are evaluated on the calling thread. */
+	public final int ruleEvaluationThreads;
+
+	/** Maximum wall time (in seconds) for evaluating a single rule. Rules exceeding it are reported as inconclusive. 0 for no limit. */
+	public final long ruleTimeout;
+
+	/** Maximum number of EOG nodes visited by the order evaluation of a single context. 0 for no limit. */
+	public final long maxEogNodesPerContext;
+
+	/** Maximum number of WPDS rules created by the typestate analysis of a single context. 0 for no limit. */
+	public final long maxWpdsRulesPerContext;
+
+	/**
+	 * Number of workers evaluating the order expression of a rule in parallel, one function at a time. With 1, all contexts are evaluated on the
+	 * thread evaluating the rule.
+	 */
+	public final int orderEvaluationThreads;
+
+	/**
+	 * Maximum number of calls between a function and a typestate-relevant call for the function to be included in the WPDS. Functions which
+	 * are not connected to any typestate-relevant call in the call graph are always pruned. -1 for no limit.
+	 */
+	public final int wpdsSliceDepth;
+
+	/** Number of workers creating the WPDS rules of functions in parallel. With 1, all rules are created on the thread evaluating the context. */
+	public final int wpdsThreads;
+
 	private ServerConfiguration(
 			boolean launchConsole,
 			boolean launchLsp,
@@ -55,7 +88,15 @@ public class ServerConfiguration {
 			boolean analyzeIncludes,
 			@NonNull File[] includePath,
 			boolean disableGoodFindings,
-			boolean disableOverflow) {
+			boolean disableOverflow,
+			int maxContextsPerRule,
+			int ruleEvaluationThreads,
+			long ruleTimeout,
+			long maxEogNodesPerContext,
+			long maxWpdsRulesPerContext,
+			int orderEvaluationThreads,
+			int wpdsSliceDepth,
+			int wpdsThreads) {
 		this.launchConsole = launchConsole;
 		this.launchLsp = launchLsp;
 		this.markModelFiles = markModelFiles;
@@ -64,6 +105,14 @@ public class ServerConfiguration {
 		this.includePath = includePath;
 		this.disableGoodFindings = disableGoodFindings;
 		this.disableOverflow = disableOverflow;
+		this.maxContextsPerRule = maxContextsPerRule;
+		this.ruleEvaluationThreads = ruleEvaluationThreads;
+		this.ruleTimeout = ruleTimeout;
+		this.maxEogNodesPerContext = maxEogNodesPerContext;
+		this.maxWpdsRulesPerContext = maxWpdsRulesPerContext;
+		this.orderEvaluationThreads = orderEvaluationThreads;
+		this.wpdsSliceDepth = wpdsSliceDepth;
+		this.wpdsThreads = wpdsThreads;
 	}
 
 	public static Builder builder() {
@@ -81,6 +130,14 @@ public class ServerConfiguration {
 		private File[] includePath = new File[0];
 		private boolean disableGoodFindings;
 		private boolean disableOverflow;
+		private int maxContextsPerRule = 50_000;
+		private int ruleEvaluationThreads = 1;
+		private long ruleTimeout = 600;
+		private long maxEogNodesPerContext = 1_000_000;
+		private long maxWpdsRulesPerContext = 5_000_000;
+		private int orderEvaluationThreads = 1;
+		private int wpdsSliceDepth = -1;
+		private int wpdsThreads = 1;
 
 		public Builder launchConsole(boolean launchConsole) {
 			this.launchConsole = launchConsole;
@@ -126,6 +183,46 @@ public class ServerConfiguration {
 			return this;
 		}
 
+		public Builder maxContextsPerRule(int maxContextsPerRule) {
+			this.maxContextsPerRule = maxContextsPerRule;
+			return this;
+		}
+
+		public Builder ruleEvaluationThreads(int ruleEvaluationThreads) {
+			this.ruleEvaluationThreads = ruleEvaluationThreads;
+			return this;
+		}
+
+		public Builder ruleTimeout(long ruleTimeout) {
+			this.ruleTimeout = ruleTimeout;
+			return this;
+		}
+
+		public Builder maxEogNodesPerContext(long maxEogNodesPerContext) {
+			this.maxEogNodesPerContext = maxEogNodesPerContext;
+			return this;
+		}
+
+		public Builder maxWpdsRulesPerContext(long maxWpdsRulesPerContext) {
+			this.maxWpdsRulesPerContext = maxWpdsRulesPerContext;
+			return this;
+		}
+
+		public Builder orderEvaluationThreads(int orderEvaluationThreads) {
+			this.orderEvaluationThreads = orderEvaluationThreads;
+			return this;
+		}
+
+		public Builder wpdsSliceDepth(int wpdsSliceDepth) {
+			this.wpdsSliceDepth = wpdsSliceDepth;
+			return this;
+		}
+
+		public Builder wpdsThreads(int wpdsThreads) {
+			this.wpdsThreads = wpdsThreads;
+			return this;
+		}
+
 		public ServerConfiguration build() {
 			return new ServerConfiguration(
 				launchConsole,
@@ -135,7 +232,15 @@ public class ServerConfiguration {
 				analyzeIncludes,
 				includePath,
 				disableGoodFindings,
-				disableOverflow);
+				disableOverflow,
+				maxContextsPerRule,
+				ruleEvaluationThreads,
+				ruleTimeout,
+				maxEogNodesPerContext,
+				maxWpdsRulesPerContext,
+				orderEvaluationThreads,
+				wpdsSliceDepth,
+				wpdsThreads);
 		}
 	}
 }
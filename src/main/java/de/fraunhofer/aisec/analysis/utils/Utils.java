@@ -11,7 +11,7 @@ import de.fraunhofer.aisec.cpg.graph.types.Type;
 import de.fraunhofer.aisec.cpg.graph.types.UnknownType;
 import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation;
 import de.fraunhofer.aisec.cpg.sarif.Region;
-import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.LabelRegistry;
 import de.fraunhofer.aisec.mark.markDsl.Parameter;
 import de.fraunhofer.aisec.markmodel.Constants;
 import org.apache.tinkerpop.gremlin.process.traversal.Path;
@@ -119,9 +119,7 @@ public class Utils {
 	 * @return
 	 */
 	public static boolean hasLabel(@NonNull Vertex v, @NonNull Class<? extends Node> cpgClass) {
-		String label = v.label();
-		Set<String> subClasses = Set.of(OverflowDatabase.getSubclasses(cpgClass));
-		return label.equals(cpgClass.getSimpleName()) || subClasses.contains(label);
+		return LabelRegistry.hasLabel(v, cpgClass);
 	}
 
 	/**
@@ -287,7 +285,7 @@ public class Utils {
 		return fqn;
 	}
 
-	private static boolean isStringType(Type sourceType) {
+	public static boolean isStringType(Type sourceType) {
 		while (sourceType instanceof PointerType) {
 			sourceType = ((PointerType) sourceType).getElementType();
 		}
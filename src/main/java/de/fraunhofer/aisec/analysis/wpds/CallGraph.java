@@ -0,0 +1,112 @@
+package de.fraunhofer.aisec.analysis.wpds;
+
+import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
+import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.INVOKES;
+
+/**
+ * Call graph of the program, built from the <code>INVOKES</code> edges of all calls. Functions are identified by the ids of their vertices.
+ * <p>
+ * Used to slice the program before the WPDS is created: only functions which can call, or be called from, a function containing a
+ * typestate-relevant call contribute to the result of post-*.
+ */
+public class CallGraph {
+
+	private static final Logger log = LoggerFactory.getLogger(CallGraph.class);
+
+	// function -> functions called by it
+	private final Map<Object, Set<Object>> callees = new HashMap<>();
+	// function -> functions calling it
+	private final Map<Object, Set<Object>> callers = new HashMap<>();
+	// call vertex -> function containing the call
+	private final Map<Object, Object> callToFunction = new HashMap<>();
+
+	private CallGraph() {
+	}
+
+	/**
+	 * Builds the call graph of all calls in the graph.
+	 *
+	 * @param crymlinTraversal
+	 * @return
+	 */
+	public static CallGraph build(@NonNull CrymlinTraversalSource crymlinTraversal) {
+		CallGraph callGraph = new CallGraph();
+		for (Vertex call : crymlinTraversal.calls().toList()) {
+			Optional<Vertex> caller = CrymlinQueryWrapper.getContainingFunction(call, crymlinTraversal);
+			if (caller.isEmpty()) {
+				continue;
+			}
+			Object callerId = caller.get().id();
+			callGraph.callToFunction.put(call.id(), callerId);
+			Iterator<Edge> invokes = call.edges(Direction.OUT, INVOKES);
+			while (invokes.hasNext()) {
+				Object calleeId = invokes.next().inVertex().id();
+				callGraph.callees.computeIfAbsent(callerId, x -> new HashSet<>()).add(calleeId);
+				callGraph.callers.computeIfAbsent(calleeId, x -> new HashSet<>()).add(callerId);
+			}
+		}
+		log.info("Call graph with {} calls and {} calling functions", callGraph.callToFunction.size(), callGraph.callees.size());
+		return callGraph;
+	}
+
+	/**
+	 * Returns the id of the function containing a call.
+	 *
+	 * @param callId id of the call vertex
+	 * @return the id of the function, or null if the vertex is not a call or not contained in a function
+	 */
+	@Nullable
+	public Object getContainingFunction(@NonNull Object callId) {
+		return callToFunction.get(callId);
+	}
+
+	/**
+	 * Returns all functions which are connected to one of the seed functions by at most <code>depth</code> calls, in either direction.
+	 *
+	 * @param seeds ids of the seed functions
+	 * @param depth maximum number of calls between a seed and a function in the slice, &lt; 0 for no limit
+	 * @return ids of the functions in the slice, including the seeds
+	 */
+	@NonNull
+	public Set<Object> slice(@NonNull Collection<Object> seeds, int depth) {
+		Set<Object> slice = new HashSet<>(seeds);
+		Deque<Object> current = new ArrayDeque<>(seeds);
+		for (int d = 0; (depth < 0 || d < depth) && !current.isEmpty(); d++) {
+			Deque<Object> next = new ArrayDeque<>();
+			for (Object function : current) {
+				for (Object neighbour : neighbours(function)) {
+					if (slice.add(neighbour)) {
+						next.add(neighbour);
+					}
+				}
+			}
+			current = next;
+		}
+		return slice;
+	}
+
+	private Set<Object> neighbours(Object function) {
+		Set<Object> neighbours = new HashSet<>(callees.getOrDefault(function, Set.of()));
+		neighbours.addAll(callers.getOrDefault(function, Set.of()));
+		return neighbours;
+	}
+}
@@ -3,16 +3,32 @@ package de.fraunhofer.aisec.analysis.wpds;
 
 import de.breakpointsec.pushdown.WPDS;
 import de.fraunhofer.aisec.cpg.sarif.Region;
+import org.checkerframework.checker.nullness.qual.NonNull;
 
 /**
  * Simply a concrete child of the abstract <code>WPDS</code> class.
+ * <p>
+ * The weights of all rules of a WPDS refer to the typestates of a single NFA, which are numbered by {@link #getStates()}.
  */
 public class CpgWpds extends WPDS<Stmt, Val, TypestateWeight> {
 	public static final String EPSILON = "EPSILON";
+	private static final Stmt EPSILON_STMT = new Stmt(EPSILON, new Region(-1, -1, -1, -1));
+
+	@NonNull
+	private final TypestateWeight.States states;
+
+	public CpgWpds(@NonNull TypestateWeight.States states) {
+		this.states = states;
+	}
+
+	@NonNull
+	public TypestateWeight.States getStates() {
+		return states;
+	}
 
 	@Override
 	public Stmt epsilon() {
-		return new Stmt(EPSILON, new Region(-1, -1, -1, -1));
+		return EPSILON_STMT;
 	}
 
 }
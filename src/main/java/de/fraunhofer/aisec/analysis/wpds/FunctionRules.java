@@ -0,0 +1,135 @@
+package de.fraunhofer.aisec.analysis.wpds;
+
+import de.breakpointsec.pushdown.rules.Rule;
+import de.fraunhofer.aisec.cpg.graph.Node;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The WPDS rules of a single function, independent of a typestate NFA.
+ * <p>
+ * The data flow structure of a function (normal, push and pop rules) does not depend on the MARK rule being checked, only the weights of some
+ * rules do. Rules with weight {@link TypestateWeight#one()} are kept as they are, all other rules are kept as {@link Template}s whose weight
+ * is computed for each typestate NFA. Instances are immutable once created and are shared by all contexts and rules of an analysis.
+ */
+public class FunctionRules {
+
+	@NonNull
+	private final List<Rule<Stmt, Val, TypestateWeight>> fixedRules;
+
+	@NonNull
+	private final List<Template> templates;
+
+	FunctionRules(@NonNull Collection<Rule<Stmt, Val, TypestateWeight>> fixedRules, @NonNull Collection<Template> templates) {
+		this.fixedRules = Collections.unmodifiableList(new ArrayList<>(fixedRules));
+		this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+	}
+
+	/**
+	 * @return rules whose weight does not depend on the typestate NFA
+	 */
+	@NonNull
+	public List<Rule<Stmt, Val, TypestateWeight>> getFixedRules() {
+		return fixedRules;
+	}
+
+	/**
+	 * @return rules whose weight depends on the typestate NFA
+	 */
+	@NonNull
+	public List<Template> getTemplates() {
+		return templates;
+	}
+
+	public int size() {
+		return fixedRules.size() + templates.size();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof FunctionRules)) {
+			return false;
+		}
+		FunctionRules other = (FunctionRules) o;
+		return fixedRules.equals(other.fixedRules) && templates.equals(other.templates);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(fixedRules, templates);
+	}
+
+	/**
+	 * A normal or pop rule without its weight.
+	 * <p>
+	 * The weight of a normal rule consists of the typestate transitions triggered by its statement (<code>trigger</code>), the weight of a pop
+	 * rule consists of the typestate transitions into the op named like the returned variable (<code>returnedVar</code>).
+	 */
+	static final class Template {
+		@NonNull
+		final Val s1;
+		@NonNull
+		final Stmt l1;
+		@NonNull
+		final Val s2;
+		// null for pop rules
+		@Nullable
+		final Stmt l2;
+		// normal rules: the CPG node of the statement
+		@Nullable
+		final Node trigger;
+		// pop rules: the returned variable
+		@Nullable
+		final String returnedVar;
+
+		private Template(@NonNull Val s1, @NonNull Stmt l1, @NonNull Val s2, @Nullable Stmt l2, @Nullable Node trigger, @Nullable String returnedVar) {
+			this.s1 = s1;
+			this.l1 = l1;
+			this.s2 = s2;
+			this.l2 = l2;
+			this.trigger = trigger;
+			this.returnedVar = returnedVar;
+		}
+
+		static Template normal(@NonNull Val s1, @NonNull Stmt l1, @NonNull Val s2, @NonNull Stmt l2, @Nullable Node trigger) {
+			return new Template(s1, l1, s2, l2, trigger, null);
+		}
+
+		static Template pop(@NonNull Val s1, @NonNull Stmt l1, @NonNull Val s2, @NonNull String returnedVar) {
+			return new Template(s1, l1, s2, null, null, returnedVar);
+		}
+
+		boolean isPop() {
+			return l2 == null;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Template)) {
+				return false;
+			}
+			Template other = (Template) o;
+			// triggers are compared by their vertex, as equal vertices may be represented by different Node objects
+			return s1.equals(other.s1) && l1.equals(other.l1) && s2.equals(other.s2) && Objects.equals(l2, other.l2)
+					&& Objects.equals(trigger != null ? trigger.getId() : null, other.trigger != null ? other.trigger.getId() : null)
+					&& Objects.equals(returnedVar, other.returnedVar);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(s1, l1, s2, l2, returnedVar);
+		}
+	}
+}
@@ -1,7 +1,6 @@
 
 package de.fraunhofer.aisec.analysis.wpds;
 
-import de.breakpointsec.pushdown.WPDS;
 import de.breakpointsec.pushdown.fsm.WeightedAutomaton;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
@@ -9,5 +8,5 @@ import org.checkerframework.checker.nullness.qual.NonNull;
  * Functional interface for creation of initial WPDS configurations.
  */
 public interface IInitialConfig {
-	WeightedAutomaton<Stmt, Val, TypestateWeight> create(@NonNull WPDS<Stmt, Val, @NonNull TypestateWeight> wpds);
+	WeightedAutomaton<Stmt, Val, TypestateWeight> create(@NonNull CpgWpds wpds);
 }
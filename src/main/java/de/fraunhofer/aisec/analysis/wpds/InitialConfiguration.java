@@ -43,7 +43,7 @@ public class InitialConfiguration {
 		// Do not instantiate.
 	}
 
-	public static WeightedAutomaton<Stmt, Val, TypestateWeight> create(IInitialConfig creator, WPDS<Stmt, Val, TypestateWeight> wpds) {
+	public static WeightedAutomaton<Stmt, Val, TypestateWeight> create(IInitialConfig creator, CpgWpds wpds) {
 		return creator.create(wpds);
 	}
 
@@ -54,7 +54,7 @@ public class InitialConfiguration {
 	 * @return
 	 */
 	@java.lang.SuppressWarnings({ "squid:S100", "squid:S1905" })
-	static final WeightedAutomaton<Stmt, Val, TypestateWeight> FIRST_TYPESTATE_EVENT(@NonNull WPDS<Stmt, Val, TypestateWeight> wpds) {
+	static final WeightedAutomaton<Stmt, Val, TypestateWeight> FIRST_TYPESTATE_EVENT(@NonNull CpgWpds wpds) {
 		return ((IInitialConfig) myWpds -> {
 			// Get all WPDS rules have a type state transition originating in a START state.
 			Set<Rule<Stmt, Val, TypestateWeight>> startRules = getTypestateStartRules(myWpds);
@@ -78,7 +78,7 @@ public class InitialConfiguration {
 				log.error("Did not find initial configuration for typestate analysis. Will fail soon.");
 			}
 
-			return createInitialWNFA(initialStates);
+			return createInitialWNFA(initialStates, myWpds.getStates());
 		}).create(wpds);
 	}
 
@@ -90,7 +90,7 @@ public class InitialConfiguration {
 	 */
 	@NonNull
 	@java.lang.SuppressWarnings({ "squid:S100", "squid:S1905" })
-	static final WeightedAutomaton<Stmt, Val, TypestateWeight> VAR_DECLARATIONS(@NonNull WPDS<Stmt, Val, TypestateWeight> wpds) {
+	static final WeightedAutomaton<Stmt, Val, TypestateWeight> VAR_DECLARATIONS(@NonNull CpgWpds wpds) {
 		return ((IInitialConfig) myWpds -> {
 			// Get START state from WPDS
 			Set<Pair<Val, Stmt>> initialStates = new HashSet<>();
@@ -109,11 +109,11 @@ public class InitialConfiguration {
 				log.error("Did not find initial configuration for typestate analysis. Will fail soon.");
 			}
 
-			return createInitialWNFA(initialStates);
+			return createInitialWNFA(initialStates, myWpds.getStates());
 		}).create(wpds);
 	}
 
-	private static WeightedAutomaton<Stmt, Val, TypestateWeight> createInitialWNFA(Set<Pair<Val, Stmt>> initialStates) {
+	private static WeightedAutomaton<Stmt, Val, TypestateWeight> createInitialWNFA(Set<Pair<Val, Stmt>> initialStates, TypestateWeight.States states) {
 		// Create statement for start configuration and create start CONFIG
 		// TODO make initialState a set or remove completely
 		int line = Integer.MAX_VALUE;
@@ -165,7 +165,7 @@ public class InitialConfiguration {
 			return wnfa;
 		}
 		wnfa.addTransition(new Transition<>(initialState, stmt, accepting),
-			new TypestateWeight(Set.of(new NFATransition<Node>(new Node(START, START), new Node(START, START), "constructor"))));
+			new TypestateWeight(states, Set.of(new NFATransition<Node>(new Node(START, START), new Node(START, START), "constructor"))));
 
 		// Add final ("accepting") states to NFA.
 		wnfa.addFinalState(accepting);
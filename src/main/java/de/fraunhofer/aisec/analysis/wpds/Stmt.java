@@ -7,16 +7,48 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.Objects;
 
-/** Wrapper for a statement in a CPG to be used as a WPDS control location. */
+/**
+ * Wrapper for a statement in a CPG to be used as a WPDS control location.
+ * <p>
+ * Statements should be created by a {@link StmtValFactory}, which interns them.
+ */
 public class Stmt {
 	@NonNull
 	private final String stmtName;
 	@Nullable
 	private final Region region;
+	// id assigned by the factory, -1 if not interned
+	private final int id;
+	@Nullable
+	private final StmtValFactory factory;
+	private final int hash;
 
 	public Stmt(@NonNull String code, @Nullable Region region) {
+		this(code, region, -1, null);
+	}
+
+	Stmt(@NonNull String code, @Nullable Region region, int id, @Nullable StmtValFactory factory) {
 		this.stmtName = code;
 		this.region = region;
+		this.id = id;
+		this.factory = factory;
+		if (region == null) {
+			this.hash = Objects.hash(stmtName);
+		} else {
+			this.hash = Objects.hash(stmtName, region.getStartLine(), region.getStartColumn());
+		}
+	}
+
+	/**
+	 * @return dense id of the statement within its factory, or -1 if the statement is not interned
+	 */
+	public int getId() {
+		return id;
+	}
+
+	@NonNull
+	public String getCode() {
+		return stmtName;
 	}
 
 	@NonNull
@@ -36,6 +68,13 @@ public class Stmt {
 		if (o == null || getClass() != o.getClass())
 			return false;
 		Stmt stmt1 = (Stmt) o;
+		if (factory != null && factory == stmt1.factory) {
+			// interned by the same factory, but not the same object
+			return false;
+		}
+		if (hash != stmt1.hash && (region == null) == (stmt1.region == null)) {
+			return false;
+		}
 		boolean samestmt = stmtName.equals(stmt1.stmtName);
 		boolean sameStart = true;
 		if (region != null && stmt1.region != null) {
@@ -46,10 +85,6 @@ public class Stmt {
 
 	@Override
 	public int hashCode() {
-		if (region == null) {
-			return Objects.hash(stmtName);
-		} else {
-			return Objects.hash(stmtName, region.getStartLine(), region.getStartColumn());
-		}
+		return hash;
 	}
 }
@@ -0,0 +1,74 @@
+package de.fraunhofer.aisec.analysis.wpds;
+
+import de.fraunhofer.aisec.cpg.sarif.Region;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.END_COLUMN;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.END_LINE;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.START_COLUMN;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.START_LINE;
+import static java.lang.Math.toIntExact;
+
+/**
+ * Creates interned {@link Stmt}s and {@link Val}s for the WPDS of one analysis.
+ * <p>
+ * Equal statements and values are represented by the same object with a dense id, so comparing two of them while saturating the WPDS is a
+ * reference comparison. Statements of CPG vertices are cached by the vertex id. The factory is thread-safe.
+ */
+public class StmtValFactory {
+
+	private final Map<Stmt, Stmt> stmts = new ConcurrentHashMap<>();
+	private final Map<Val, Val> vals = new ConcurrentHashMap<>();
+	// vertex id -> statement of the vertex
+	private final Map<Object, Stmt> vertexStmts = new ConcurrentHashMap<>();
+	private final AtomicInteger nextStmtId = new AtomicInteger();
+	private final AtomicInteger nextValId = new AtomicInteger();
+
+	@NonNull
+	public Stmt stmt(@NonNull String code, @Nullable Region region) {
+		return stmts.computeIfAbsent(new Stmt(code, region), x -> new Stmt(code, region, nextStmtId.getAndIncrement(), this));
+	}
+
+	/**
+	 * Returns the statement of a CPG vertex, holding the "code" and "location->region" properties of the vertex.
+	 *
+	 * @param v CPG vertex
+	 * @return
+	 */
+	@NonNull
+	public Stmt stmt(@NonNull Vertex v) {
+		return vertexStmts.computeIfAbsent(v.id(), id -> {
+			Region region = new Region(-1, -1, -1, -1);
+			if (v.property(START_LINE).isPresent() &&
+					v.property(START_COLUMN).isPresent() &&
+					v.property(END_LINE).isPresent() &&
+					v.property(END_COLUMN).isPresent()) {
+				region = new Region(
+					toIntExact((long) v.property(START_LINE).value()),
+					toIntExact((long) v.property(START_COLUMN).value()),
+					toIntExact((long) v.property(END_LINE).value()),
+					toIntExact((long) v.property(END_COLUMN).value()));
+			}
+			return stmt(v.property("code").orElse("").toString(), region);
+		});
+	}
+
+	@NonNull
+	public Val val(@NonNull String variable, @NonNull String currentScope) {
+		return vals.computeIfAbsent(new Val(variable, currentScope), x -> new Val(variable, currentScope, nextValId.getAndIncrement(), this));
+	}
+
+	public int getNumberOfStmts() {
+		return stmts.size();
+	}
+
+	public int getNumberOfVals() {
+		return vals.size();
+	}
+}
@@ -0,0 +1,96 @@
+package de.fraunhofer.aisec.analysis.wpds;
+
+import de.fraunhofer.aisec.analysis.structures.Pair;
+import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration;
+import de.fraunhofer.aisec.markmodel.MEntity;
+import de.fraunhofer.aisec.markmodel.MOp;
+import de.fraunhofer.aisec.markmodel.MRule;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from call sites to the ops of a rule they call, built once per rule from the vertices assigned to each {@link MOp}.
+ * <p>
+ * A statement triggers a typestate transition if its call site is assigned to the op of the target of the transition, for the entity of the
+ * Mark instance of the transition. Requires that the vertices of all ops have been precalculated (see {@link MOp#getAllVertices()}).
+ * <p>
+ * This is stricter than the former matching of each statement against the op statements. That matching accepted a method call if the type
+ * of its base started with the scope of an op statement and the name of the op statement ended with the name of the call, regardless of
+ * the arguments. Calls whose name is only a suffix of the op (e.g. <code>msg()</code> for <code>start_msg()</code>) or whose arguments do
+ * not match any op statement no longer trigger a transition, in line with the NFA-based evaluation, which uses the same vertices.
+ */
+public class TransitionIndex {
+
+	// vertex id -> Mark instance -> ops
+	private final Map<Object, Map<String, Set<String>>> index = new HashMap<>();
+
+	private TransitionIndex() {
+	}
+
+	public static TransitionIndex of(@NonNull MRule rule) {
+		TransitionIndex transitionIndex = new TransitionIndex();
+		for (Map.Entry<String, Pair<String, MEntity>> entry : rule.getEntityReferences().entrySet()) {
+			MEntity ent = entry.getValue().getValue1();
+			if (ent == null) {
+				continue;
+			}
+			for (MOp op : ent.getOps()) {
+				for (Vertex v : op.getAllVertices()) {
+					transitionIndex.index.computeIfAbsent(v.id(), x -> new HashMap<>())
+							.computeIfAbsent(entry.getKey(), x -> new HashSet<>())
+							.add(op.getName());
+				}
+			}
+		}
+		return transitionIndex;
+	}
+
+	/**
+	 * Returns true if the given CPG node calls <code>op</code> of the entity of <code>markInstance</code>.
+	 *
+	 * @param cpgNode      A CPG node - typically a {@code CallExpression} or a {@code VariableDeclaration} initialized by a call
+	 * @param markInstance The Mark instance of the transition
+	 * @param op           The target typestate, indicated by a MARK op
+	 * @return
+	 */
+	public boolean triggers(@NonNull Node cpgNode, @Nullable String markInstance, @NonNull String op) {
+		if (markInstance == null) {
+			return false;
+		}
+		if (calls(cpgNode, markInstance, op)) {
+			return true;
+		}
+		if (cpgNode instanceof VariableDeclaration) {
+			Node initializer = ((VariableDeclaration) cpgNode).getInitializer();
+			return initializer != null && calls(initializer, markInstance, op);
+		}
+		return false;
+	}
+
+	/**
+	 * @param cpgNode
+	 * @return true if the node or its initializer is a call site of any op of the rule
+	 */
+	public boolean isCallSite(@NonNull Node cpgNode) {
+		if (index.containsKey(cpgNode.getId())) {
+			return true;
+		}
+		if (cpgNode instanceof VariableDeclaration) {
+			Node initializer = ((VariableDeclaration) cpgNode).getInitializer();
+			return initializer != null && index.containsKey(initializer.getId());
+		}
+		return false;
+	}
+
+	private boolean calls(@NonNull Node cpgNode, @NonNull String markInstance, @NonNull String op) {
+		Map<String, Set<String>> ops = index.get(cpgNode.getId());
+		return ops != null && ops.getOrDefault(markInstance, Set.of()).contains(op);
+	}
+}
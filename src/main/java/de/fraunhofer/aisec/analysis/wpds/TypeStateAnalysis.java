@@ -2,7 +2,6 @@
 package de.fraunhofer.aisec.analysis.wpds;
 
 import de.breakpointsec.pushdown.IllegalTransitionException;
-import de.breakpointsec.pushdown.WPDS;
 import de.breakpointsec.pushdown.fsm.Transition;
 import de.breakpointsec.pushdown.fsm.WeightedAutomaton;
 import de.breakpointsec.pushdown.rules.NormalRule;
@@ -13,10 +12,12 @@ import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
 import de.fraunhofer.aisec.analysis.structures.CPGInstanceContext;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
+import de.fraunhofer.aisec.analysis.structures.EvaluationBudget;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
 import de.fraunhofer.aisec.analysis.structures.NonNullPair;
 import de.fraunhofer.aisec.analysis.structures.Pair;
+import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
 import de.fraunhofer.aisec.analysis.utils.Utils;
 import de.fraunhofer.aisec.cpg.graph.declarations.Declaration;
 import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration;
@@ -30,13 +31,12 @@ import de.fraunhofer.aisec.cpg.graph.statements.Statement;
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.CallExpression;
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.DeclaredReferenceExpression;
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.Expression;
-import de.fraunhofer.aisec.cpg.graph.types.Type;
 import de.fraunhofer.aisec.cpg.sarif.Region;
 import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
+import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversal;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
-import de.fraunhofer.aisec.mark.markDsl.OpStatement;
 import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
 import de.fraunhofer.aisec.mark.markDsl.Terminal;
 import de.fraunhofer.aisec.markmodel.MEntity;
@@ -62,11 +62,15 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 import static de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper.isCallExpression;
@@ -99,10 +103,20 @@ public class TypeStateAnalysis {
 	private final MarkContextHolder markContextHolder;
 	private CPGInstanceContext instanceContext;
 	private AnalysisContext ctx;
+	private TransitionIndex transitionIndex;
+	@NonNull
+	private final StmtValFactory factory;
+	// maximum call depth of the program slice, < 0 for no limit
+	private final int sliceDepth;
+	// number of workers creating the WPDS rules of functions
+	private final int threads;
 
-	public TypeStateAnalysis(@NonNull MarkContextHolder markContextHolder, @NonNull AnalysisContext ctx) {
+	public TypeStateAnalysis(@NonNull MarkContextHolder markContextHolder, @NonNull AnalysisContext ctx, @NonNull ServerConfiguration config) {
 		this.markContextHolder = markContextHolder;
 		this.ctx = ctx;
+		this.sliceDepth = config.wpdsSliceDepth;
+		this.threads = config.wpdsThreads;
+		this.factory = ctx.getStmtValFactory();
 	}
 
 	/**
@@ -123,6 +137,7 @@ public class TypeStateAnalysis {
 
 		instanceContext = markContextHolder.getContext(contextID).getInstanceContext();
 		this.rule = rule;
+		this.transitionIndex = markContextHolder.getTransitionIndex(() -> TransitionIndex.of(rule));
 
 		// Remember the order expression we are analyzing
 		de.fraunhofer.aisec.mark.markDsl.Expression expr = this.rule.getStatement().getEnsure().getExp();
@@ -142,7 +157,7 @@ public class TypeStateAnalysis {
 		log.debug("Initial typestate NFA:\n{}", tsNFA);
 
 		// Create a weighted pushdown system
-		CpgWpds wpds = createWpds(crymlinTraversal, tsNFA);
+		CpgWpds wpds = createWpds(crymlinTraversal, tsNFA, markInstance);
 
 		/*
 		 * Create a weighted automaton (= a weighted NFA) that describes the initial configurations. The initial configuration is the statement containing the declaration
@@ -182,6 +197,7 @@ public class TypeStateAnalysis {
 			log.debug("Non saturated NFA {}", wnfa);
 		}
 		// Saturate the NFA from the WPDS, using the post-* algorithm.
+		markContextHolder.getBudget().checkTime();
 		wpds.poststar(wnfa);
 
 		// For debugging only: Print the post-*-saturated NFA
@@ -355,29 +371,66 @@ public class TypeStateAnalysis {
 	 * <p>
 	 * When populating the WPDS using post-* algorithm, the result will be an automaton capturing the reachable type states.
 	 *
+	 * Only functions in the slice of the call graph around the typestate-relevant calls are translated, as no other function can contribute
+	 * to the typestate of the Mark instance.
+	 *
 	 * @param crymlinTraversal
 	 * @param tsNfa
+	 * @param markInstance
 	 * @return
 	 * @throws IllegalTransitionException
 	 */
-	private CpgWpds createWpds(CrymlinTraversalSource crymlinTraversal, NFA tsNfa) {
+	private CpgWpds createWpds(CrymlinTraversalSource crymlinTraversal, NFA tsNfa, String markInstance) {
 		log.info("-----  Creating WPDS ----------");
 
-		/* Create empty WPDS */
-		CpgWpds wpds = new CpgWpds();
+		/* Create empty WPDS, whose weights number the typestates of this NFA */
+		CpgWpds wpds = new CpgWpds(new TypestateWeight.States());
 
 		/**
 		 * For each function, create a WPDS.
 		 *
-		 * The (normal, push, pop) rules of the WPDS reflect the data flow, similar to a static taint analysis.
+		 * The (normal, push, pop) rules of the WPDS reflect the data flow, similar to a static taint analysis. The data flow of a function does not depend on the
+		 * typestate NFA, so it is translated only once per analysis and cached. Only the weights are computed for the current NFA.
 		 *
 		 */
+		Map<Object, FunctionRules> cache = ctx.getWpdsFunctionRules();
+		// weights of the typestate transitions triggered by a statement, computed once per NFA
+		Map<de.fraunhofer.aisec.cpg.graph.Node, TypestateWeight> triggeredWeights = new IdentityHashMap<>();
+		// weights of the typestate transitions into the op named like a returned variable, computed once per NFA
+		Map<String, TypestateWeight> returnWeights = new HashMap<>();
+		Set<Object> slice = getSlice(crymlinTraversal, markInstance);
+		List<Vertex> functions = new ArrayList<>();
+		long pruned = 0;
 		for (Vertex functionDeclaration : crymlinTraversal.functions().toList()) {
-			WPDS<Stmt, Val, TypestateWeight> funcWpds = createWpds(functionDeclaration, tsNfa, crymlinTraversal);
-			for (Rule<Stmt, Val, TypestateWeight> r : funcWpds.getAllRules()) {
+			if (slice.contains(functionDeclaration.id())) {
+				functions.add(functionDeclaration);
+			} else {
+				pruned++;
+			}
+		}
+
+		List<Vertex> missing = functions.stream().filter(f -> !cache.containsKey(f.id())).collect(Collectors.toList());
+		if (threads > 1 && missing.size() > 1) {
+			createFunctionRulesInParallel(missing, cache);
+		}
+
+		// rules are added in the order of the functions, so the WPDS does not depend on the scheduling of the workers
+		for (Vertex functionDeclaration : functions) {
+			FunctionRules funcRules = cache.get(functionDeclaration.id());
+			if (funcRules == null) {
+				funcRules = createFunctionRules(functionDeclaration, crymlinTraversal);
+				cache.put(functionDeclaration.id(), funcRules);
+			}
+			markContextHolder.getBudget().addWpdsRules(funcRules.size());
+			for (Rule<Stmt, Val, TypestateWeight> r : funcRules.getFixedRules()) {
 				wpds.addRule(r);
 			}
+			for (FunctionRules.Template template : funcRules.getTemplates()) {
+				wpds.addRule(instantiate(template, tsNfa, wpds.getStates(), triggeredWeights, returnWeights));
+			}
 		}
+		log.info("WPDS created from {} functions, {} functions pruned", functions.size(), pruned);
+		markContextHolder.getProfile().addWpdsFunctions(functions.size(), pruned);
 
 		/*
 		 * Typestate analysis is finished. The results are as follows: 1) Transitions in WNFA with *empty weights* or weights into an ZERO type state indicate an error.
@@ -389,27 +442,152 @@ public class TypeStateAnalysis {
 	}
 
 	/**
-	 * Turns a single function into a WPDS.
+	 * Returns the ids of all functions which are connected by at most <code>sliceDepth</code> calls to a function containing a call of an op of
+	 * the rule or the declaration of the Mark instance.
+	 *
+	 * @param crymlinTraversal
+	 * @param markInstance
+	 * @return
+	 */
+	private Set<Object> getSlice(CrymlinTraversalSource crymlinTraversal, String markInstance) {
+		CallGraph callGraph = ctx.getCallGraph(() -> CallGraph.build(crymlinTraversal));
+
+		Set<Vertex> relevant = new HashSet<>();
+		for (Pair<String, MEntity> ref : rule.getEntityReferences().values()) {
+			MEntity ent = ref.getValue1();
+			if (ent == null) {
+				continue;
+			}
+			for (MOp op : ent.getOps()) {
+				relevant.addAll(op.getAllVertices());
+			}
+		}
+		Vertex instance = instanceContext.getVertex(markInstance);
+		if (instance != null) {
+			relevant.add(instance);
+		}
+
+		Set<Object> seeds = new HashSet<>();
+		for (Vertex v : relevant) {
+			Object function = callGraph.getContainingFunction(v.id());
+			if (function == null) {
+				// not a call, e.g. a variable declaration
+				function = CrymlinQueryWrapper.getContainingFunction(v, crymlinTraversal)
+						.map(Vertex::id)
+						.orElse(null);
+			}
+			if (function != null) {
+				seeds.add(function);
+			}
+		}
+		return callGraph.slice(seeds, sliceDepth);
+	}
+
+	/**
+	 * Creates the weight of a rule template for the given typestate NFA.
 	 *
+	 * @param template
 	 * @param tsNfa
+	 * @param states           typestate ids of the NFA
+	 * @param triggeredWeights cache of the weights of statements
+	 * @param returnWeights    cache of the weights of returned variables
+	 * @return
+	 */
+	private Rule<Stmt, Val, TypestateWeight> instantiate(FunctionRules.Template template, NFA tsNfa, TypestateWeight.States states,
+			Map<de.fraunhofer.aisec.cpg.graph.Node, TypestateWeight> triggeredWeights, Map<String, TypestateWeight> returnWeights) {
+		if (template.isPop()) {
+			TypestateWeight weight = returnWeights.computeIfAbsent(template.returnedVar, returnedVar -> {
+				Set<NFATransition<Node>> relevantNFATransitions = tsNfa.getTransitions()
+						.stream()
+						.filter(
+							tran -> tran.getTarget()
+									.getOp()
+									.equals(returnedVar))
+						.collect(Collectors.toSet());
+				return relevantNFATransitions.isEmpty() ? TypestateWeight.one() : new TypestateWeight(states, relevantNFATransitions);
+			});
+			return new PopRule<>(template.s1, template.l1, template.s2, weight);
+		}
+
+		TypestateWeight weight = TypestateWeight.one();
+		if (template.trigger != null) {
+			weight = triggeredWeights.computeIfAbsent(template.trigger, node -> {
+				if (!transitionIndex.isCallSite(node)) {
+					return TypestateWeight.one();
+				}
+				Set<NFATransition<Node>> relevantNFATransitions = tsNfa.getTransitions()
+						.stream()
+						.filter(
+							tran -> transitionIndex.triggers(node, tran.getTarget().getBase(), tran.getTarget().getOp()))
+						.collect(Collectors.toSet());
+				return relevantNFATransitions.isEmpty() ? TypestateWeight.one() : new TypestateWeight(states, relevantNFATransitions);
+			});
+		}
+		return new NormalRule<>(template.s1, template.l1, template.s2, template.l2, weight);
+	}
+
+	/**
+	 * Creates the rules of functions on the pool of workers of the analysis and puts them into the cache.
+	 * <p>
+	 * The functions are split into one chunk per worker, so that each worker opens a single connection to the db. The work of the workers
+	 * counts against the budget of the context evaluated by the calling thread.
+	 *
+	 * @param functions the functions whose rules are not cached yet
+	 * @param cache
+	 */
+	private void createFunctionRulesInParallel(List<Vertex> functions, Map<Object, FunctionRules> cache) {
+		int workers = Math.min(threads, functions.size());
+		log.info("Creating WPDS rules of {} functions with {} workers", functions.size(), workers);
+		ForkJoinPool pool = ctx.getWpdsWorkers(threads);
+		EvaluationBudget budget = markContextHolder.getBudget();
+		EvaluationBudget.ContextCounters counters = budget.getContextCounters();
+
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int w = 0; w < workers; w++) {
+			List<Vertex> chunk = new ArrayList<>();
+			for (int i = w; i < functions.size(); i += workers) {
+				chunk.add(functions.get(i));
+			}
+			tasks.add(pool.submit(() -> {
+				budget.joinContext(counters);
+				try (TraversalConnection connection = new TraversalConnection(ctx.getDatabase())) {
+					for (Vertex functionDeclaration : chunk) {
+						cache.putIfAbsent(functionDeclaration.id(), createFunctionRules(functionDeclaration, connection.getCrymlinTraversal()));
+					}
+				}
+				finally {
+					// do not account later work of this worker to the context
+					budget.startContext();
+				}
+			}));
+		}
+		// rethrows the first failure, e.g. if the budget of the context is exceeded
+		tasks.forEach(ForkJoinTask::join);
+	}
+
+	/**
+	 * Turns a single function into WPDS rules, independent of a typestate NFA.
+	 *
+	 * @param fdVertex
 	 * @param crymlinTraversal
 	 * @return
 	 */
-	private WPDS<Stmt, Val, TypestateWeight> createWpds(@NonNull Vertex fdVertex, NFA tsNfa, CrymlinTraversalSource crymlinTraversal) {
+	private FunctionRules createFunctionRules(@NonNull Vertex fdVertex, CrymlinTraversalSource crymlinTraversal) {
 		// To remember already visited nodes and avoid endless iteration
 		HashSet<Vertex> alreadySeen = new HashSet<>();
 
 		var db = ctx.getDatabase();
 
-		// the WPDS we are creating here
-		CpgWpds wpds = new CpgWpds();
+		// the rules we are creating here. A statement is reached once per preceding statement, so the same rule may be created repeatedly.
+		Set<Rule<Stmt, Val, TypestateWeight>> fixedRules = new LinkedHashSet<>();
+		Set<FunctionRules.Template> templates = new LinkedHashSet<>();
 
 		FunctionDeclaration fd = (FunctionDeclaration) db.vertexToNode(fdVertex);
 		log.info("Processing function {}", fdVertex.property(NAME).orElse(""));
 
 		// Work list of following EOG nodes. Not all EOG nodes will result in a WPDS rule, though.
 		ArrayDeque<NonNullPair<Vertex, Set<Stmt>>> worklist = new ArrayDeque<>();
-		worklist.add(new NonNullPair<>(fdVertex, Set.of(new Stmt(fd.getName(), Utils.getRegion(fd)))));
+		worklist.add(new NonNullPair<>(fdVertex, Set.of(factory.stmt(fd.getName(), Utils.getRegion(fd)))));
 
 		Map<Stmt, Val> skipTheseValsAtStmt = new HashMap<>();
 		Set<Val> valsInScope = new HashSet<>();
@@ -417,18 +595,19 @@ public class TypeStateAnalysis {
 		// Make sure we track all parameters inside this function
 		List<ParamVariableDeclaration> params = fd.getParameters();
 		for (ParamVariableDeclaration p : params) {
-			valsInScope.add(new Val(p.getName(), fd.getName()));
+			valsInScope.add(factory.val(p.getName(), fd.getName()));
 		}
 
 		// Start creation of WPDS rules by traversing the EOG
 		while (!worklist.isEmpty()) {
 			NonNullPair<Vertex, Set<Stmt>> currentPair = worklist.pop();
 			Vertex v = currentPair.getValue0();
+			markContextHolder.getBudget().visitEogNode();
 
 			for (Stmt previousStmt : currentPair.getValue1()) {
 				// We consider only "Statements" and CallExpressions in the EOG
 				if (isRelevantStmt(v)) {
-					createRulesForStmt(wpds, fdVertex, previousStmt, v, valsInScope, skipTheseValsAtStmt, tsNfa, crymlinTraversal);
+					createRulesForStmt(fixedRules, templates, fdVertex, previousStmt, v, valsInScope, skipTheseValsAtStmt, crymlinTraversal);
 				} // End isRelevantStmt()
 			}
 
@@ -442,17 +621,17 @@ public class TypeStateAnalysis {
 				}
 			}
 		}
-		return wpds;
+		return new FunctionRules(fixedRules, templates);
 	}
 
 	@java.lang.SuppressWarnings("squid:S107")
-	private void createRulesForStmt(@NonNull WPDS<Stmt, Val, TypestateWeight> wpds,
+	private void createRulesForStmt(@NonNull Set<Rule<Stmt, Val, TypestateWeight>> fixedRules,
+			@NonNull Set<FunctionRules.Template> templates,
 			@NonNull Vertex functionVertex,
 			@NonNull Stmt previousStmt,
 			@NonNull Vertex currentStmtVertex,
 			@NonNull Set<Val> valsInScope,
 			@NonNull Map<Stmt, Val> skipTheseValsAtStmt,
-			@NonNull NFA tsNfa,
 			@NonNull CrymlinTraversalSource crymlinTraversal) {
 		var db = ctx.getDatabase();
 
@@ -461,14 +640,14 @@ public class TypeStateAnalysis {
 		de.fraunhofer.aisec.cpg.graph.Node stmtNode = db.vertexToNode(currentStmtVertex);
 
 		/* First we create normal rules from previous stmt to the current stmt, simply propagating existing values. */
-		Set<NormalRule<Stmt, Val, TypestateWeight>> normalRules = createNormalRules(previousStmt, currentStmtVertex, valsInScope, tsNfa);
-		for (NormalRule<Stmt, Val, TypestateWeight> normalRule : normalRules) {
+		List<FunctionRules.Template> normalRules = createNormalRules(previousStmt, currentStmt, stmtNode, valsInScope);
+		for (FunctionRules.Template normalRule : normalRules) {
 			/*
 			  If this is a call into a known method, we skip immediate propagation. In that case, data flows *into* the method.
 			 */
-			boolean skipIt = shouldBeSkipped(normalRule, skipTheseValsAtStmt);
+			boolean skipIt = shouldBeSkipped(normalRule.s1, normalRule.l2, skipTheseValsAtStmt);
 			if (!skipIt) {
-				wpds.addRule(normalRule);
+				templates.add(normalRule);
 			}
 		}
 
@@ -484,7 +663,7 @@ public class TypeStateAnalysis {
 			Set<PushRule<Stmt, Val, TypestateWeight>> pushRules = createPushRules(callE, crymlinTraversal, currentFunctionName, currentStmt, currentStmtVertex);
 			for (PushRule<Stmt, Val, TypestateWeight> pushRule : pushRules) {
 				log.debug("  Adding push rule: {}", pushRule);
-				wpds.addRule(pushRule);
+				fixedRules.add(pushRule);
 
 				// Remember that arguments flow only into callee and do not bypass it.
 				skipTheseValsAtStmt.put(pushRule.getCallSite(), pushRule.getS1());
@@ -492,7 +671,7 @@ public class TypeStateAnalysis {
 		} else if (CrymlinQueryWrapper.isVariableDeclaration(currentStmtVertex)) {
 			// Add declVal to set of currently tracked variables
 			VariableDeclaration decl = (VariableDeclaration) db.vertexToNode(currentStmtVertex);
-			Val declVal = new Val(decl.getName(), currentFunctionName);
+			Val declVal = factory.val(decl.getName(), currentFunctionName);
 			valsInScope.add(declVal);
 		} else if (CrymlinQueryWrapper.isDeclarationStatement(currentStmtVertex)) {
 			/* Handle declaration of new variables.
@@ -507,20 +686,20 @@ public class TypeStateAnalysis {
 				if (!(decl instanceof VariableDeclaration)) {
 					continue;
 				}
-				Val declVal = new Val(decl.getName(), currentFunctionName);
+				Val declVal = factory.val(decl.getName(), currentFunctionName);
 				Expression rhs = ((VariableDeclaration) decl).getInitializer();
 
 				if (rhs instanceof CallExpression) {
 					/* Handle function/method calls whose return value is assigned to a declared variable.
 					   A new data flow for the declared variable (declVal) is introduced.
 					 */
-					Rule<Stmt, Val, TypestateWeight> normaleRuleDeclared = new NormalRule<>(new Val(CpgWpds.EPSILON, currentFunctionName),
+					Rule<Stmt, Val, TypestateWeight> normaleRuleDeclared = new NormalRule<>(factory.val(CpgWpds.EPSILON, currentFunctionName),
 						previousStmt,
 						declVal,
 						currentStmt,
 						TypestateWeight.one());
 					log.debug("Adding normal rule for declaration {}", normaleRuleDeclared);
-					wpds.addRule(normaleRuleDeclared);
+					fixedRules.add(normaleRuleDeclared);
 
 					// Add declVal to set of currently tracked variables
 					valsInScope.add(declVal);
@@ -530,14 +709,14 @@ public class TypeStateAnalysis {
 					 *
 					 * We simply take rhs.getName() as a data source. This might be imprecise and need further differentiation. For instance, if rhs is an expression (other than CallExpression), we might want to recursively handle data flows within that expression. This is currently not implemented as it is not needed for our use case and would add unneeded complexity.
 					 */
-					Val rhsVal = new Val(rhs.getName(), currentFunctionName);
+					Val rhsVal = factory.val(rhs.getName(), currentFunctionName);
 
 					// Add declVal to set of currently tracked variables
 					valsInScope.add(declVal);
 					Rule<Stmt, Val, TypestateWeight> normalRulePropagate = new NormalRule<>(rhsVal, previousStmt, declVal, currentStmt,
 						TypestateWeight.one());
 					log.debug("Adding normal rule for assignment {}", normalRulePropagate);
-					wpds.addRule(normalRulePropagate);
+					fixedRules.add(normalRulePropagate);
 				}
 			}
 		} else if (CrymlinQueryWrapper.isReturnStatement(currentStmtVertex)) {
@@ -547,22 +726,12 @@ public class TypeStateAnalysis {
 				Set<Val> returnedVals = findReturnedVals(crymlinTraversal, currentStmtVertex);
 
 				for (Val returnedVal : returnedVals) {
-					Set<NFATransition<Node>> relevantNFATransitions = tsNfa.getTransitions()
-							.stream()
-							.filter(
-								tran -> tran.getTarget()
-										.getOp()
-										.equals(returnedVal.getVariable()))
-							.collect(Collectors.toSet());
-					TypestateWeight weight = relevantNFATransitions.isEmpty() ? TypestateWeight.one() : new TypestateWeight(relevantNFATransitions);
-
-					// Pop Rule for actually returned value
-					PopRule<Stmt, Val, TypestateWeight> returnPopRule = new PopRule<>(new Val(returnV.getReturnValue()
+					// Pop Rule for actually returned value. Its weight are the typestate transitions into the op named like the returned variable
+					FunctionRules.Template returnPopRule = FunctionRules.Template.pop(factory.val(returnV.getReturnValue()
 							.getName(),
 						currentFunctionName),
-						currentStmt, returnedVal, weight);
-					wpds.addRule(returnPopRule);
-					log.debug("Adding pop rule {}", returnPopRule);
+						currentStmt, returnedVal, returnedVal.getVariable());
+					templates.add(returnPopRule);
 				}
 
 				// Pop Rules for side effects on parameters
@@ -571,7 +740,7 @@ public class TypeStateAnalysis {
 					for (Pair<Val, Val> pToA : paramToValueMap.get(currentFunctionName)) {
 						PopRule<Stmt, Val, TypestateWeight> popRule = new PopRule<>(pToA.getValue0(), currentStmt, pToA.getValue1(),
 							TypestateWeight.one());
-						wpds.addRule(popRule);
+						fixedRules.add(popRule);
 						log.debug("Adding pop rule {}", popRule);
 					}
 				}
@@ -590,20 +759,19 @@ public class TypeStateAnalysis {
 				}
 				if (!skipIt) {
 					log.debug("Adding normal rule!!! {}", normalRule);
-					wpds.addRule(normalRule);
+					fixedRules.add(normalRule);
 				}
 			}
 
 		} // End isReturnStatement
 	}
 
-	private boolean shouldBeSkipped(NormalRule<Stmt, Val, TypestateWeight> normalRule,
+	private boolean shouldBeSkipped(Val s1, Stmt l2,
 			Map<Stmt, Val> skipTheseValsAtStmt) {
 		boolean skipIt = false;
-		if (skipTheseValsAtStmt.get(normalRule.getL2()) != null) {
-			Val forbiddenVal = skipTheseValsAtStmt.get(normalRule.getL2());
-			if (!normalRule.getS1()
-					.equals(forbiddenVal)) {
+		if (skipTheseValsAtStmt.get(l2) != null) {
+			Val forbiddenVal = skipTheseValsAtStmt.get(l2);
+			if (!s1.equals(forbiddenVal)) {
 				skipIt = true;
 			}
 		}
@@ -653,118 +821,22 @@ public class TypeStateAnalysis {
 				|| v.edges(Direction.IN, CrymlinConstants.STATEMENTS).hasNext() || numberOfOutgoingEogs >= 2;
 	}
 
-	private Set<NormalRule<Stmt, Val, TypestateWeight>> createNormalRules(final Stmt previousStmt, final Vertex v, final Set<Val> valsInScope, final NFA tsNfa) {
-		var db = ctx.getDatabase();
-
-		Stmt currentStmt = vertexToStmt(v);
-
-		de.fraunhofer.aisec.cpg.graph.@Nullable Node currentStmtNode = db.vertexToNode(v);
-
-		Set<NormalRule<Stmt, Val, TypestateWeight>> result = new HashSet<>();
+	/**
+	 * Creates normal rules propagating all values in scope to the current statement. Their weight are the typestate transitions triggered by the
+	 * current statement.
+	 */
+	private List<FunctionRules.Template> createNormalRules(final Stmt previousStmt, final Stmt currentStmt,
+			final de.fraunhofer.aisec.cpg.graph.@Nullable Node currentStmtNode, final Set<Val> valsInScope) {
+		List<FunctionRules.Template> result = new ArrayList<>();
 
 		// Create normal rule. Flow remains where it is.
 		for (Val valInScope : valsInScope) {
-			// Determine weight
-			Set<NFATransition<Node>> relevantNFATransitions = tsNfa.getTransitions()
-					.stream()
-					.filter(
-						tran -> triggersTypestateTransition(currentStmtNode, tran.getTarget().getBase(), tran.getTarget().getOp()))
-					.collect(Collectors.toSet());
-			TypestateWeight weight = relevantNFATransitions.isEmpty() ? TypestateWeight.one() : new TypestateWeight(relevantNFATransitions);
-
-			NormalRule<Stmt, Val, TypestateWeight> normalRule = new NormalRule<>(valInScope, previousStmt, valInScope, currentStmt, weight);
-			log.debug("Adding normal rule {}", normalRule);
-			result.add(normalRule);
+			result.add(FunctionRules.Template.normal(valInScope, previousStmt, valInScope, currentStmt, currentStmtNode));
 		}
 
 		return result;
 	}
 
-	/**
-	 * Returns true if the given CPG {@code Node} will result in a transition from any typestate into the typestate detened by {@code op}.
-	 *
-	 * @param cpgNode A CPG node - typically a {@code CallExpression} or anything that contains a call (e.g., a {@code VariableDeclaration})
-	 * @param markInstance The current MARK instance.
-	 * @param op The target typestate, indicated by a MARK op.
-	 * @return
-	 */
-	private boolean triggersTypestateTransition(de.fraunhofer.aisec.cpg.graph.Node cpgNode, @Nullable String markInstance, String op) {
-		/*
-		 TODO Future improvement: This method is repeatedly called for different "ops" and thus repeats quite some work.
-		 The "op" paramenter should be removed and the method should return a (possibly empty) set of target typestates (=ops)
-		 that would be reached, so this method needs to be called only once per CPG node.
-		 */
-		if (markInstance == null || cpgNode.getName().equals("")) {
-			return false;
-		}
-
-		// Get the MARK entity of the markInstance
-		Pair<String, MEntity> mEntity = this.rule.getEntityReferences().get(markInstance);
-		if (mEntity == null || mEntity.getValue1() == null) {
-			return false;
-		}
-
-		// For non-OO languages, we need to check valInScope against function args and return value (=assignee)
-		String assigneeVar = null;
-		String assignerFqn = null;
-		if (cpgNode instanceof VariableDeclaration) {
-			assigneeVar = cpgNode.getName();
-			if (((VariableDeclaration) cpgNode).getInitializer() instanceof CallExpression) {
-				assignerFqn = ((CallExpression) ((VariableDeclaration) cpgNode).getInitializer()).getFqn();
-			}
-		} else if (cpgNode instanceof CallExpression) {
-			assignerFqn = ((CallExpression) cpgNode).getFqn();
-		}
-
-		// For method calls we collect the "base", its type(s), and the method arguments.
-		Set<Type> types = new HashSet<>();
-		List<Expression> arguments = new ArrayList<>();
-		if (cpgNode instanceof CallExpression) {
-			de.fraunhofer.aisec.cpg.graph.Node base = ((CallExpression) cpgNode).getBase();
-
-			// Check for type of base, if exists
-			if (base != null && base instanceof Expression) {
-				types = ((Expression) base).getPossibleSubTypes();
-			}
-
-			arguments.addAll(((CallExpression) cpgNode).getArguments());
-		}
-
-		for (MOp o : mEntity.getValue1().getOps()) {
-			if (!op.equals(o.getName())) {
-				continue;
-			}
-			for (OpStatement opStatement : o.getStatements()) {
-				if (types.isEmpty()) {
-					/* Failure to resolve type or a function call (e.g. EVP_EncryptInit), rather than a method call.
-					   In case of function calls/non-OO languages, we ignore the type of the (non-existing) base
-					   and simply check if the call stmt matches the one in the "op" spec.
-					   "Matches" means that it matches the function and valInScope is either one of the arguments or is assigned the call's return value.
-					 */
-					if ((assignerFqn != null && opStatement.getCall().getName().equals(assignerFqn))
-							&& (assigneeVar != null // is return value assigned to valInScope?
-									|| arguments.isEmpty()
-									|| CrymlinQueryWrapper.argumentsMatchSourceParameters(opStatement.getCall().getParams(),
-										((CallExpression) cpgNode).getArguments()))) {
-						return true;
-					}
-				} else {
-					for (Type type : types) {
-						if (type.getTypeName().startsWith(Utils.getScope(opStatement.getCall().getName()).replace("::", ".")) // Dirty: startsWith() to ignore modifiers (such as "*").
-								&& opStatement.getCall()
-										.getName()
-										.endsWith(cpgNode.getName())) {
-							// TODO should rather compare fully qualified names instead of "endsWith"
-							return true;
-						}
-					}
-				}
-			}
-		}
-
-		return false;
-	}
-
 	/**
 	 * Finds the mapping from function parameters to arguments of calls to this method. This is needed for later construction of pop rules.
 	 *
@@ -824,7 +896,7 @@ public class TypeStateAnalysis {
 
 					Set<Pair<Val, Val>> pToA = new HashSet<>();
 					for (int i = 0; i < Math.min(params.size(), args.size()); i++) {
-						pToA.add(new Pair<>(new Val(params.get(i).getName(), calleeName), new Val(args.get(i).getName(), caller.getName())));
+						pToA.add(new Pair<>(factory.val(params.get(i).getName(), calleeName), factory.val(args.get(i).getName(), caller.getName())));
 					}
 					result.put(calleeName, pToA);
 				}
@@ -888,7 +960,7 @@ public class TypeStateAnalysis {
 					}
 
 					if (callerFunctionName != null) {
-						returnedVals.add(new Val(returnVar, callerFunctionName));
+						returnedVals.add(factory.val(returnVar, callerFunctionName));
 					}
 				}
 			}
@@ -940,7 +1012,7 @@ public class TypeStateAnalysis {
 							argVals.get(i),
 							currentStmt,
 							parmVals.get(i),
-							new Stmt(potentialCallee.getName(), Utils.getRegion(potentialCallee)),
+							factory.stmt(potentialCallee.getName(), Utils.getRegion(potentialCallee)),
 							returnSite,
 							TypestateWeight.one()); // A push rule does not trigger any typestate transitions.
 						pushRules.add(pushRule);
@@ -978,7 +1050,7 @@ public class TypeStateAnalysis {
 	private List<Val> parametersToVals(@NonNull FunctionDeclaration func) {
 		List<Val> parmVals = new ArrayList<>();
 		for (ParamVariableDeclaration p : func.getParameters()) {
-			parmVals.add(new Val(p.getName(), func.getName()));
+			parmVals.add(factory.val(p.getName(), func.getName()));
 		}
 		return parmVals;
 	}
@@ -987,7 +1059,7 @@ public class TypeStateAnalysis {
 		List<Val> argVals = new ArrayList<>();
 		List<Expression> args = callExpression.getArguments();
 		for (Expression arg : args) {
-			argVals.add(new Val(arg.getName(), currentFunctionName));
+			argVals.add(factory.val(arg.getName(), currentFunctionName));
 		}
 		return argVals;
 	}
@@ -1000,25 +1072,6 @@ public class TypeStateAnalysis {
 	 */
 	@NonNull
 	private Stmt vertexToStmt(@NonNull Vertex v) {
-		Region region = new Region(-1, -1, -1, -1);
-		if (v.property(START_LINE).isPresent() &&
-				v.property(START_COLUMN).isPresent() &&
-				v.property(END_LINE).isPresent() &&
-				v.property(END_COLUMN).isPresent()) {
-			region = new Region(
-				toIntExact((long) v.property(START_LINE)
-						.value()),
-				toIntExact((long) v.property(START_COLUMN)
-						.value()),
-				toIntExact((long) v.property(END_LINE)
-						.value()),
-				toIntExact((long) v.property(END_COLUMN)
-						.value()));
-		}
-		return new Stmt(
-			v.property("code")
-					.orElse("")
-					.toString(),
-			region);
+		return factory.stmt(v);
 	}
 }
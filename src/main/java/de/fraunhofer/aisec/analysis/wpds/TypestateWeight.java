@@ -1,13 +1,17 @@
-
 package de.fraunhofer.aisec.analysis.wpds;
 
-import com.google.common.collect.Sets;
 import de.breakpointsec.pushdown.weights.Semiring;
 import de.fraunhofer.aisec.markmodel.fsm.Node;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -17,37 +21,76 @@ import java.util.stream.Collectors;
  * <p>
  * A weight domain is a bounded idempotent semiring. In our case, the semiring's operations "combine" and "extend" are linked to a nondeterministic finite automaton
  * (FSM), created from the typedef definition in a Mark file (=a regular expression).
+ *
+ * <p>
+ * A weight is a relation between typestates, stored as a boolean matrix: row <code>s</code> is the set of typestates reachable from typestate <code>s</code>.
+ * Typestates are identified by dense ids of their names, so extend is a boolean matrix multiplication and combine is a bitwise or. The ids are
+ * assigned by a {@link States} registry, which is created for each typestate NFA. Only weights of the same registry may be combined or
+ * extended.
  */
 public class TypestateWeight extends Semiring {
-	private @NonNull Set<NFATransition<Node>> value = new HashSet<>();
+	private static final BitSet[] EMPTY = new BitSet[0];
+	private static final TypestateWeight ONE = new TypestateWeight(Element.ONE);
+	private static final TypestateWeight ZERO = new TypestateWeight(Element.ZERO);
+
+	// null for the fixed elements ONE and ZERO
 	@Nullable
-	private NFA nfa = null;
+	private final States states;
+	// source typestate id -> target typestate ids. Rows without targets are null, the last row is not null.
+	private final @NonNull BitSet[] rows;
 	@Nullable
-	private Element fixedElement = null;
+	private final Element fixedElement;
+	private final int hash;
 
 	public enum Element {
 		ZERO,
 		ONE
 	}
 
-	public TypestateWeight(@NonNull NFA nfa) {
-		this.nfa = nfa;
+	/**
+	 * Creates a weight from typestate transitions.
+	 *
+	 * @param states               registry of the typestates of the NFA the transitions belong to
+	 * @param typestateTransitions
+	 */
+	public TypestateWeight(@NonNull States states, @NonNull Set<NFATransition<Node>> typestateTransitions) {
+		BitSet[] relation = EMPTY;
+		for (NFATransition<Node> t : typestateTransitions) {
+			int source = states.idOf(t.getSource());
+			if (source >= relation.length) {
+				relation = Arrays.copyOf(relation, source + 1);
+			}
+			if (relation[source] == null) {
+				relation[source] = new BitSet();
+			}
+			relation[source].set(states.idOf(t.getTarget()));
+		}
+		this.states = states;
+		this.rows = relation;
+		this.fixedElement = null;
+		this.hash = Arrays.hashCode(rows);
 	}
 
-	public TypestateWeight(@NonNull Set<NFATransition<Node>> typestateTransitions) {
-		this.value = typestateTransitions;
+	private TypestateWeight(@NonNull Element fixedEle) {
+		this.states = null;
+		this.rows = EMPTY;
+		this.fixedElement = fixedEle;
+		this.hash = fixedEle.hashCode();
 	}
 
-	public TypestateWeight(@NonNull Element fixedEle) {
-		this.fixedElement = fixedEle;
+	private TypestateWeight(@Nullable States states, @NonNull BitSet[] rows) {
+		this.states = states;
+		this.rows = rows;
+		this.fixedElement = null;
+		this.hash = Arrays.hashCode(rows);
 	}
 
 	public static TypestateWeight one() {
-		return new TypestateWeight(Element.ONE);
+		return ONE;
 	}
 
 	public static TypestateWeight zero() {
-		return new TypestateWeight(Element.ZERO);
+		return ZERO;
 	}
 
 	/**
@@ -58,34 +101,44 @@ public class TypestateWeight extends Semiring {
 	 */
 	@Override
 	public Semiring extendWith(@NonNull Semiring other) {
-		if (other.equals(one()))
+		if (other.equals(ONE))
 			return this;
-		if (this.equals(one()))
+		if (this.equals(ONE))
 			return other;
-		if (other.equals(zero()) || this.equals(zero())) {
-			return zero();
+		if (other.equals(ZERO) || this.equals(ZERO)) {
+			return ZERO;
 		}
 
 		if (!(other instanceof TypestateWeight)) {
 			throw new IllegalArgumentException("Expected Weight but got " + other.getClass());
 		}
 
-		TypestateWeight otherW = (TypestateWeight) other;
-
-		Set<NFATransition<Node>> resultSet = new HashSet<>();
-		for (NFATransition<Node> my : this.value) {
-			for (NFATransition<Node> theirs : otherW.value) {
-				// 1-step transitive hull. Note that we check for equality of names, as equality of Node objects includes their successor collection.
-				if (my.getTarget().toString().equals(theirs.getSource().toString())) {
-					NFATransition<Node> newTsTran = new NFATransition<Node>(my.getSource(), theirs.getTarget(), my.getLabel());
-					resultSet.add(newTsTran);
+		BitSet[] theirs = ((TypestateWeight) other).rows;
+		checkStates((TypestateWeight) other);
+		BitSet[] result = new BitSet[rows.length];
+		int length = 0;
+		for (int s = 0; s < rows.length; s++) {
+			if (rows[s] == null) {
+				continue;
+			}
+			BitSet row = null;
+			for (int t = rows[s].nextSetBit(0); t >= 0 && t < theirs.length; t = rows[s].nextSetBit(t + 1)) {
+				if (theirs[t] != null) {
+					if (row == null) {
+						row = new BitSet();
+					}
+					row.or(theirs[t]);
 				}
 			}
+			if (row != null) {
+				result[s] = row;
+				length = s + 1;
+			}
 		}
-		if (resultSet.isEmpty()) {
-			return TypestateWeight.zero();
+		if (length == 0) {
+			return ZERO;
 		}
-		return new TypestateWeight(resultSet);
+		return new TypestateWeight(states, length == result.length ? result : Arrays.copyOf(result, length));
 	}
 
 	/**
@@ -96,36 +149,78 @@ public class TypestateWeight extends Semiring {
 	 */
 	@Override
 	public Semiring combineWith(Semiring other) {
-		if (this.equals(one()) && other.equals(one())) {
-			return one();
+		if (this.equals(ONE) && other.equals(ONE)) {
+			return ONE;
 		}
 
-		if (this.equals(zero()) && other.equals(zero())) {
-			return zero();
+		if (this.equals(ZERO) && other.equals(ZERO)) {
+			return ZERO;
 		}
 
 		if (other instanceof TypestateWeight) {
-			Set<NFATransition<Node>> union = Sets.union(this.value, ((TypestateWeight) other).value);
-			return new TypestateWeight(union);
+			TypestateWeight otherWeight = (TypestateWeight) other;
+			checkStates(otherWeight);
+			BitSet[] theirs = otherWeight.rows;
+			BitSet[] longer = rows.length >= theirs.length ? rows : theirs;
+			BitSet[] shorter = rows.length >= theirs.length ? theirs : rows;
+			BitSet[] union = Arrays.copyOf(longer, longer.length);
+			for (int s = 0; s < shorter.length; s++) {
+				if (shorter[s] == null) {
+					continue;
+				}
+				if (union[s] == null) {
+					union[s] = shorter[s];
+				} else if (!containsAll(union[s], shorter[s])) {
+					BitSet row = (BitSet) union[s].clone();
+					row.or(shorter[s]);
+					union[s] = row;
+				}
+			}
+			return new TypestateWeight(states != null ? states : otherWeight.states, union);
 		}
 
-		return new TypestateWeight(Set.of());
+		return new TypestateWeight(states, EMPTY);
+	}
+
+	private void checkStates(@NonNull TypestateWeight other) {
+		if (this.states != null && other.states != null && this.states != other.states) {
+			throw new IllegalArgumentException("Weights of different typestate NFAs cannot be combined");
+		}
+	}
+
+	private static boolean containsAll(BitSet set, BitSet subset) {
+		BitSet missing = (BitSet) subset.clone();
+		missing.andNot(set);
+		return missing.isEmpty();
+	}
+
+	/**
+	 * Returns the typestate transitions of this weight, labeled by the op of their target.
+	 *
+	 * @return
+	 */
+	public Set<NFATransition<Node>> getTransitions() {
+		Set<NFATransition<Node>> transitions = new HashSet<>();
+		for (int s = 0; s < rows.length; s++) {
+			if (rows[s] == null) {
+				continue;
+			}
+			Node source = states.get(s);
+			for (int t = rows[s].nextSetBit(0); t >= 0; t = rows[s].nextSetBit(t + 1)) {
+				Node target = states.get(t);
+				transitions.add(new NFATransition<>(source, target, target.getOp()));
+			}
+		}
+		return transitions;
 	}
 
 	@Override
 	public Object value() {
-		// Returns current state of FSM
 		if (this.fixedElement != null) {
 			return this.fixedElement;
 		}
 
-		if (nfa != null) {
-			// return string representation of the current state of the FSM.
-			return nfa.getCurrentConfiguration();
-		}
-
-		// Concatenate transitions' toString(), joined by comma
-		return value;
+		return getTransitions();
 	}
 
 	public String toString() {
@@ -134,39 +229,42 @@ public class TypestateWeight extends Semiring {
 			return this.fixedElement.toString();
 		}
 
-		return this.value.stream().map(NFATransition::toString).collect(Collectors.joining(", "));
+		return getTransitions().stream().map(NFATransition::toString).collect(Collectors.joining(", "));
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		for (NFATransition<Node> v : this.value) {
-			result = prime * result + v.hashCode();
-		}
-		if (this.fixedElement != null) {
-			result = prime * result + this.fixedElement.hashCode();
-		}
-		return result;
+		return hash;
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
 		if (!(obj instanceof TypestateWeight))
 			return false;
 		TypestateWeight other = (TypestateWeight) obj;
-		if (this.fixedElement != null && other.fixedElement == null)
-			return false;
-		if (this.fixedElement == null && other.fixedElement != null)
-			return false;
-		if (this.fixedElement != null) {
-			return this.fixedElement.equals(other.fixedElement);
+		return this.fixedElement == other.fixedElement && this.hash == other.hash && Arrays.equals(this.rows, other.rows)
+				&& (this.rows.length == 0 || this.states == other.states);
+	}
+
+	/**
+	 * Dense ids of the typestates of one NFA. Typestates are identified by their names (as before, equality of Node objects would include
+	 * their successors), so the names must be unique within the NFA, but not across NFAs.
+	 */
+	public static final class States {
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<Node> nodes = new ArrayList<>();
+
+		synchronized int idOf(@NonNull Node node) {
+			return ids.computeIfAbsent(node.toString(), name -> {
+				nodes.add(node);
+				return nodes.size() - 1;
+			});
 		}
 
-		return this.value.equals(other.value);
+		synchronized Node get(int id) {
+			return nodes.get(id);
+		}
 	}
 }
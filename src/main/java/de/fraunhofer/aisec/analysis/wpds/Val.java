@@ -2,15 +2,44 @@
 package de.fraunhofer.aisec.analysis.wpds;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
+/**
+ * A variable in the scope of a function, to be used as a WPDS stack symbol.
+ * <p>
+ * Values should be created by a {@link StmtValFactory}, which interns them.
+ */
 public class Val {
 
 	private final String variable;
 	private final String currentScope;
+	// id assigned by the factory, -1 if not interned
+	private final int id;
+	@Nullable
+	private final StmtValFactory factory;
+	private final int hash;
 
 	public Val(@NonNull String variable, @NonNull String currentScope) {
+		this(variable, currentScope, -1, null);
+	}
+
+	Val(@NonNull String variable, @NonNull String currentScope, int id, @Nullable StmtValFactory factory) {
 		this.variable = variable;
 		this.currentScope = currentScope;
+		this.id = id;
+		this.factory = factory;
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + variable.hashCode();
+		result = prime * result + currentScope.hashCode();
+		this.hash = result;
+	}
+
+	/**
+	 * @return dense id of the value within its factory, or -1 if the value is not interned
+	 */
+	public int getId() {
+		return id;
 	}
 
 	@Override
@@ -28,11 +57,7 @@ public class Val {
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + variable.hashCode();
-		result = prime * result + currentScope.hashCode();
-		return result;
+		return hash;
 	}
 
 	@Override
@@ -43,6 +68,13 @@ public class Val {
 			return false;
 		}
 		Val other = (Val) obj;
+		if (factory != null && factory == other.factory) {
+			// interned by the same factory, but not the same object
+			return false;
+		}
+		if (hash != other.hash) {
+			return false;
+		}
 		if (!variable.equals(other.variable)) {
 			return false;
 		}
@@ -14,7 +14,6 @@ import de.fraunhofer.aisec.analysis.utils.Utils;
 import de.fraunhofer.aisec.cpg.graph.*;
 import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration;
 import de.fraunhofer.aisec.cpg.graph.declarations.MethodDeclaration;
-import de.fraunhofer.aisec.cpg.graph.declarations.ValueDeclaration;
 import de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration;
 import de.fraunhofer.aisec.cpg.graph.statements.DeclarationStatement;
 import de.fraunhofer.aisec.cpg.graph.statements.ReturnStatement;
@@ -27,8 +26,11 @@ import de.fraunhofer.aisec.cpg.graph.statements.expressions.Literal;
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.MemberExpression;
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.NewExpression;
 import de.fraunhofer.aisec.cpg.graph.types.Type;
+import de.fraunhofer.aisec.crymlin.connectors.db.AstIndex;
 import de.fraunhofer.aisec.crymlin.connectors.db.Database;
+import de.fraunhofer.aisec.crymlin.connectors.db.LabelRegistry;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.TypeMatcher;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import de.fraunhofer.aisec.mark.markDsl.OpStatement;
 import de.fraunhofer.aisec.mark.markDsl.Parameter;
@@ -52,6 +54,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -68,6 +71,7 @@ import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.DFG;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.EOG;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.FIELDS;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.INITIALIZER;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.NAME;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.POSSIBLE_SUB_TYPES;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.REFERS_TO;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.TYPE;
@@ -109,22 +113,23 @@ public class CrymlinQueryWrapper {
 		Set<Vertex> ret = new HashSet<>(crymlinTraversal.ctors(fqnName).toSet());
 
 		// now, ret contains possible candidates --> need to filter out calls where params don't match
-		ret.removeIf(
-			v -> {
-				// ConstructExpression needs a special treatment because the argument of a ConstructExpression is the CallExpression to the constructor and we are interested in its arguments.
-				if (Utils.hasLabel(v, ConstructExpression.class)) {
-					List<Vertex> args = getArguments(v);
-					if (args.size() == 1 && Utils.hasLabel(args.get(0), CallExpression.class)) {
-						return !argumentsMatchParameters(db, parameters, getArguments(args.get(0)));
-					}
-				}
-
-				return !argumentsMatchParameters(db, parameters, getArguments(v));
-			});
+		ret.removeIf(v -> !ctorArgumentsMatchParameters(db, parameters, v));
 
 		return ret;
 	}
 
+	private static boolean ctorArgumentsMatchParameters(@NonNull Database<Node> db, EList<Parameter> parameters, @NonNull Vertex v) {
+		// ConstructExpression needs a special treatment because the argument of a ConstructExpression is the CallExpression to the constructor and we are interested in its arguments.
+		if (Utils.hasLabel(v, ConstructExpression.class)) {
+			List<Vertex> args = getArguments(v);
+			if (args.size() == 1 && Utils.hasLabel(args.get(0), CallExpression.class)) {
+				return argumentsMatchParameters(db, parameters, getArguments(args.get(0)));
+			}
+		}
+
+		return argumentsMatchParameters(db, parameters, getArguments(v));
+	}
+
 	public static List<Vertex> getArguments(@NonNull Vertex v) {
 		Iterator<Edge> referencedArguments = v.edges(Direction.OUT, ARGUMENTS);
 
@@ -185,18 +190,19 @@ public class CrymlinQueryWrapper {
 	 * @return
 	 */
 	private static boolean argumentsMatchParameters(@NonNull Database<Node> db, EList<Parameter> markParameters, @NonNull List<Vertex> sourceArguments) {
+		TypeMatcher typeMatcher = TypeMatcher.of(db);
 		int i = 0;
 
 		while (i < markParameters.size() && i < sourceArguments.size()) {
 			Parameter markParam = markParameters.get(i);
 
-			Set<Type> sourceArgs = new HashSet<>();
+			Set<Vertex> sourceArgs = new HashSet<>();
 			/* We cannot assume that the position in sourceArgument corresponds with the actual order. Must rather check "argumentIndex" property. */
 			for (Vertex vArg : sourceArguments) {
 				long sourceArgPos = (long) vArg.property("argumentIndex")
 						.orElse(-1);
 				if (sourceArgPos == i) {
-					sourceArgs.addAll(getPossibleSubTypes(db, vArg));
+					sourceArgs.addAll(getPossibleSubTypeVertices(vArg));
 				}
 			}
 
@@ -222,7 +228,7 @@ public class CrymlinQueryWrapper {
 				continue;
 			}
 
-			if (!Utils.isSubTypeOf(sourceArgs, markParam)) {
+			if (!typeMatcher.isSubTypeOf(sourceArgs, markParam)) {
 				return false;
 			}
 
@@ -316,18 +322,7 @@ public class CrymlinQueryWrapper {
 	 * @return
 	 */
 	public static boolean isCallExpression(@NonNull Vertex v) {
-		if (v.label()
-				.equals(CallExpression.class.getSimpleName())) {
-			return true;
-		}
-
-		for (String subClass : OverflowDatabase.getSubclasses(CallExpression.class)) {
-			if (v.label()
-					.equals(subClass)) {
-				return true;
-			}
-		}
-		return false;
+		return LabelRegistry.hasLabel(v, CallExpression.class);
 	}
 
 	public static List<Vertex> getNextStatements(CrymlinTraversalSource crymlin, long id) {
@@ -637,18 +632,99 @@ public class CrymlinQueryWrapper {
 		return callsAndInitializers;
 	}
 
+	/**
+	 * Batch version of {@link #getVerticesForFunctionDeclaration(Database, de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration, CrymlinTraversalSource)}.
+	 * <p>
+	 * Call and construct expressions are retrieved once and matched against all function declarations, instead of one traversal per
+	 * declaration.
+	 *
+	 * @param db
+	 * @param functionDeclarations
+	 * @param crymlinTraversal
+	 * @return the calls and initializers of each function declaration
+	 */
+	@NonNull
+	public static Map<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration, Set<Vertex>> getVerticesForFunctionDeclarations(
+			@NonNull Database<Node> db,
+			@NonNull Collection<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration> functionDeclarations,
+			@NonNull CrymlinTraversalSource crymlinTraversal) {
+
+		Map<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration, Set<Vertex>> result = new HashMap<>();
+		// unified name -> function declarations
+		Map<String, List<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration>> byName = new HashMap<>();
+		for (de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration functionDeclaration : functionDeclarations) {
+			result.put(functionDeclaration, new HashSet<>());
+			byName.computeIfAbsent(Utils.unifyType(functionDeclaration.getName()), n -> new ArrayList<>()).add(functionDeclaration);
+		}
+		if (byName.isEmpty()) {
+			return result;
+		}
+
+		Set<String> labels = new HashSet<>(List.of(OverflowDatabase.getSubclasses(CallExpression.class)));
+		labels.add(ConstructExpression.class.getSimpleName());
+		labels.addAll(List.of(OverflowDatabase.getSubclasses(ConstructExpression.class)));
+		List<Vertex> candidates = crymlinTraversal.V()
+				.hasLabel(CallExpression.class.getSimpleName(), labels.toArray(new String[0]))
+				.toList();
+
+		for (Vertex v : candidates) {
+			// fix for Java. In java, a ctor is always accompanied with a newexpression
+			if (Utils.hasLabel(v, NewExpression.class)) {
+				continue;
+			}
+
+			// calls, see getCalls()
+			if (Utils.hasLabel(v, CallExpression.class)) {
+				Object fqn = v.property("fqn").orElse(null);
+				List<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration> called = fqn != null ? byName.get(fqn.toString()) : null;
+				if (called != null) {
+					List<Vertex> arguments = getArguments(v);
+					for (de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration functionDeclaration : called) {
+						if (argumentsMatchParameters(db, functionDeclaration.getParams(), arguments)) {
+							result.get(functionDeclaration).add(v);
+						}
+					}
+				}
+			}
+
+			// initializers, see getCtors()
+			if (Utils.hasLabel(v, ConstructExpression.class)) {
+				List<String> typeNames = new ArrayList<>();
+				v.vertices(Direction.OUT, TYPE).forEachRemaining(t -> t.property(NAME).ifPresent(n -> typeNames.add(n.toString())));
+				for (Map.Entry<String, List<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration>> entry : byName.entrySet()) {
+					if (typeNames.stream().noneMatch(t -> t.contains(entry.getKey()))) {
+						continue;
+					}
+					for (de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration functionDeclaration : entry.getValue()) {
+						if (ctorArgumentsMatchParameters(db, functionDeclaration.getParams(), v)) {
+							result.get(functionDeclaration).add(v);
+						}
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * Given a Vertex v, try to find the function or method in which v is contained.
 	 * <p>
 	 * The resulting Vertex will be of type FunctionDeclaration or MethodDeclaration.
 	 * <p>
 	 * If v is not contained in a function, this method returns an empty Optional.
+	 * <p>
+	 * Answered from the {@link AstIndex} of the graph, if v is part of it.
 	 *
 	 * @param v
 	 * @param crymlinTraversal
 	 * @return
 	 */
 	public static Optional<Vertex> getContainingFunction(Vertex v, CrymlinTraversalSource crymlinTraversal) {
+		AstIndex index = AstIndex.get(crymlinTraversal.getGraph());
+		if (index != null && index.contains(v.id())) {
+			return Optional.ofNullable(index.getFunction(v.id()));
+		}
 		return crymlinTraversal.byID((long) v.id())
 				.repeat(inE()
 						.has("sub-graph", "AST")
@@ -751,24 +827,33 @@ public class CrymlinQueryWrapper {
 		return Optional.empty();
 	}
 
+	/**
+	 * Resolves the vertices and values of a MARK operand (e.g., <code>t.foo</code>) for all contexts which are currently alive in the
+	 * {@link MarkContextHolder}.
+	 * <p>
+	 * Only matching vertices whose base belongs to one of the live contexts are passed on to constant resolution. Contexts which have already been
+	 * removed (e.g., because the <code>when</code>-part of the rule did not hold) do not cause any further work.
+	 *
+	 * @param db
+	 * @param context   the contexts to resolve the operand for
+	 * @param markVar   the operand
+	 * @param rule
+	 * @param markModel
+	 * @param crymlin
+	 * @return a map from context id to the vertices (and values) the operand resolves to in this context
+	 */
 	public static Map<Integer, List<CPGVertexWithValue>> resolveOperand(@NonNull Database<Node> db, MarkContextHolder context, @NonNull String markVar,
 			@NonNull MRule rule,
 			Mark markModel, @NonNull CrymlinTraversalSource crymlin) {
 
 		HashMap<Integer, List<CPGVertexWithValue>> verticesPerContext = new HashMap<>();
 
-		// first get all vertices for the operand
-		List<CPGVertexWithValue> matchingVertices = CrymlinQueryWrapper.getMatchingVertices(db, markVar, rule, markModel, crymlin);
-
-		if (matchingVertices.isEmpty()) {
-			log.warn("Did not find matching vertices for {}", markVar);
+		if (context.getAllContexts().isEmpty()) {
+			// nothing is alive anymore, no need to query anything
 			return verticesPerContext;
 		}
 
-		// Use Constant resolver to resolve assignments to arguments
-		List<CPGVertexWithValue> vertices = new ArrayList<>(resolveValuesForVertices(db, matchingVertices, markVar));
-
-		// now split them up to belong to each instance (t) or markvar (t.foo)
+		// split them up to belong to each instance (t) or markvar (t.foo)
 		final String instance = markVar.substring(0, markVar.lastIndexOf('.'));
 
 		// precompute a list mapping
@@ -816,14 +901,37 @@ public class CrymlinQueryWrapper {
 			}
 		}
 
-		// now calculate a list of contextID to matching vertices which fill the base we are looking for
+		if (nodeIDToContextIDs.isEmpty()) {
+			log.warn("No live context references a base for {}", markVar);
+			return verticesPerContext;
+		}
 
-		for (CPGVertexWithValue vertexWithValue : vertices) {
-			Long id = -1L; // -1 = null
-			if (vertexWithValue.getBase() != null) {
-				id = (Long) vertexWithValue.getBase().id();
+		// get all vertices for the operand
+		List<CPGVertexWithValue> matchingVertices = CrymlinQueryWrapper.getMatchingVertices(db, markVar, rule, markModel, crymlin);
+
+		if (matchingVertices.isEmpty()) {
+			log.warn("Did not find matching vertices for {}", markVar);
+			return verticesPerContext;
+		}
+
+		// only keep vertices whose base belongs to a live context, before running the (expensive) constant resolution
+		List<CPGVertexWithValue> liveVertices = new ArrayList<>();
+		for (CPGVertexWithValue vertexWithValue : matchingVertices) {
+			if (nodeIDToContextIDs.containsKey(getBaseId(vertexWithValue))) {
+				liveVertices.add(vertexWithValue);
 			}
-			List<Integer> contextIDs = nodeIDToContextIDs.get(id);
+		}
+		if (liveVertices.size() < matchingVertices.size()) {
+			log.debug("Skipping {} of {} vertices for {}, their base is not referenced by any live context", matchingVertices.size() - liveVertices.size(),
+				matchingVertices.size(), markVar);
+		}
+
+		// Use Constant resolver to resolve assignments to arguments
+		List<CPGVertexWithValue> vertices = resolveValuesForVertices(db, liveVertices, markVar);
+
+		// now calculate a list of contextID to matching vertices which fill the base we are looking for
+		for (CPGVertexWithValue vertexWithValue : vertices) {
+			List<Integer> contextIDs = nodeIDToContextIDs.get(getBaseId(vertexWithValue));
 			if (contextIDs == null) {
 				log.warn("Base not found in any context. Following expressionevaluation will be incomplete");
 			} else {
@@ -838,19 +946,16 @@ public class CrymlinQueryWrapper {
 	}
 
 	/**
-	 * Returns a set of ValueDeclarations where the variable/field/argument given by <code>delRefExpr</code> is declared.
+	 * Returns the id of the base of the given vertex, or -1 if it does not have a base.
 	 *
-	 * @param declRefExpr
+	 * @param vertexWithValue
 	 * @return
 	 */
-	public static Set<ValueDeclaration> getDeclarationSites(@NonNull Database<Node> db, @NonNull DeclaredReferenceExpression declRefExpr) {
-		Set<Vertex> refersTo = db.getGraph().traversal().V(declRefExpr.getId()).outE(REFERS_TO).inV().toBulkSet();
-		Set<ValueDeclaration> varDecls = new HashSet<>();
-		for (Vertex v : refersTo) {
-			ValueDeclaration varDecl = (ValueDeclaration) db.vertexToNode(v);
-			varDecls.add(varDecl);
+	private static Long getBaseId(@NonNull CPGVertexWithValue vertexWithValue) {
+		if (vertexWithValue.getBase() != null) {
+			return (Long) vertexWithValue.getBase().id();
 		}
-		return varDecls;
+		return -1L; // -1 = null
 	}
 
 	public static URI getFileLocation(Vertex v) {
@@ -864,6 +969,16 @@ public class CrymlinQueryWrapper {
 			return true;
 		}
 
+		if (branchesAllowed) {
+			AstIndex index = AstIndex.get(source.graph());
+			if (index != null) {
+				Optional<Boolean> reachable = index.isEogReachable(source, sink);
+				if (reachable.isPresent()) {
+					return reachable.get();
+				}
+			}
+		}
+
 		HashSet<Vertex> workList = new HashSet<>();
 		HashSet<Vertex> seen = new HashSet<>();
 		workList.add(source);
@@ -974,8 +1089,22 @@ public class CrymlinQueryWrapper {
 	@NonNull
 	public static Set<Type> getPossibleSubTypes(@NonNull Database<Node> db, @NonNull Vertex next) {
 		Set<Type> types = new HashSet<>();
+		getPossibleSubTypeVertices(next).forEach(v -> types.add((Type) db.vertexToNode(v)));
+
+		return types;
+	}
+
+	/**
+	 * Same as {@link #getPossibleSubTypes(Database, Vertex)}, but returns the type vertices without materializing them.
+	 *
+	 * @param next
+	 * @return
+	 */
+	@NonNull
+	public static Set<Vertex> getPossibleSubTypeVertices(@NonNull Vertex next) {
+		Set<Vertex> types = new HashSet<>();
 		UnmodifiableIterator<Edge> it = Iterators.filter(next.edges(Direction.OUT, TYPE, POSSIBLE_SUB_TYPES), v -> Utils.hasLabel(v.inVertex(), Type.class));
-		it.forEachRemaining(e -> types.add((Type) db.vertexToNode(e.inVertex())));
+		it.forEachRemaining(e -> types.add(e.inVertex()));
 
 		return types;
 	}
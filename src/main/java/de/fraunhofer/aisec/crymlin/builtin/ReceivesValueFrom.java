@@ -7,24 +7,21 @@ import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
 import de.fraunhofer.aisec.analysis.structures.ListValue;
 import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
-import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
+import de.fraunhofer.aisec.crymlin.connectors.db.DfgReachability;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Method signature: _receives_value_from(var target, var source).
  *
- * Returns true, if there is a data flow from source to target.
+ * Returns true, if there is a data flow from source to target, and false otherwise.
  *
- * Data flows are only traced intraprocedurally and this builtin will return true if <i>any</i> flow exists.
+ * Data flows are only traced intraprocedurally and this builtin will return true if <i>any</i> flow exists, with at most
+ * {@link DfgReachability#MAX_DEPTH} DFG edges.
  */
 public class ReceivesValueFrom implements Builtin {
 	private static final Logger log = LoggerFactory.getLogger(ReceivesValueFrom.class);
@@ -51,26 +48,13 @@ public class ReceivesValueFrom implements Builtin {
 			Vertex targetV = vertices.get(0);
 			Vertex sourceV = vertices.get(1);
 
-			// Follow DFG edges backwards, avoiding loops
-			Set<Vertex> seen = new HashSet<>();
-			Deque<Vertex> worklist = new ArrayDeque<>();
-			worklist.addAll(CrymlinQueryWrapper.getDFGSources(targetV));
-			while (!worklist.isEmpty()) {
-				Vertex currentV = worklist.pop();
-				if (seen.contains(currentV)) {
-					continue;
-				}
-				seen.add(currentV);
-				if (currentV.id().equals(sourceV.id())) {
-					return ConstantValue.of(true);
-				}
-				worklist.addAll(CrymlinQueryWrapper.getDFGSources(targetV));
-			}
+			// Follow DFG edges backwards. Closures are computed once per target vertex, only their computation counts as visited vertices.
+			DfgReachability dfg = DfgReachability.of(targetV.graph());
+			return ConstantValue.of(dfg.receivesValueFrom(targetV, sourceV, markContextHolder.getProfile()::addDfgVertices));
 		}
 		catch (InvalidArgumentException e) {
 			log.warn(e.getMessage());
 			return ErrorValue.newErrorValue(e.getMessage() + " in _receives_value_from");
 		}
-		return ErrorValue.newErrorValue("Error in _receives_value_from");
 	}
 }
@@ -0,0 +1,151 @@
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration;
+import de.fraunhofer.aisec.cpg.graph.declarations.MethodDeclaration;
+import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index from each AST vertex to its enclosing function, built in a single pass over the AST of a graph.
+ * <p>
+ * The index is built after the translation result has been persisted (see {@link #build(Graph)}) and replaces climbing the AST with Gremlin
+ * for each lookup. Vertices which are not part of the index, e.g. because they have been added later, are not answered by the index;
+ * callers fall back to the traversal.
+ * <p>
+ * As with the traversal, the enclosing function of a vertex is the closest strict ancestor labeled <code>FunctionDeclaration</code> or
+ * <code>MethodDeclaration</code>.
+ */
+public class AstIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(AstIndex.class);
+
+	// vertex id -> enclosing scope. Scopes are shared by all vertices of the same function.
+	private final Map<Object, Scope> scopes = new HashMap<>();
+
+	// function vertex id -> EOG reachability, built on first use
+	private final Map<Object, EogReachability> eogReachability = new ConcurrentHashMap<>();
+
+	private AstIndex() {
+	}
+
+	/**
+	 * Builds the index of a graph and registers it, replacing a previous index of the graph.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	@NonNull
+	public static AstIndex build(@NonNull Graph graph) {
+		AstIndex index = new AstIndex();
+		Deque<Vertex> vertices = new ArrayDeque<>();
+		Deque<Scope> enclosing = new ArrayDeque<>();
+		Iterator<Vertex> it = graph.vertices();
+		while (it.hasNext()) {
+			Vertex v = it.next();
+			if (LabelRegistry.hasLabel(v, TranslationUnitDeclaration.class)) {
+				vertices.push(v);
+				enclosing.push(Scope.NONE);
+			}
+		}
+
+		while (!vertices.isEmpty()) {
+			Vertex v = vertices.pop();
+			Scope scope = enclosing.pop();
+			if (index.scopes.putIfAbsent(v.id(), scope) != null) {
+				continue;
+			}
+
+			Scope childScope = scope;
+			String label = v.label();
+			if (label.equals(FunctionDeclaration.class.getSimpleName()) || label.equals(MethodDeclaration.class.getSimpleName())) {
+				childScope = new Scope(v);
+			} else if (LabelRegistry.hasLabel(v, TranslationUnitDeclaration.class)) {
+				childScope = Scope.NONE;
+			}
+
+			Iterator<Edge> edges = v.edges(Direction.OUT);
+			while (edges.hasNext()) {
+				Edge e = edges.next();
+				if ("AST".equals(e.property("sub-graph").orElse(null))) {
+					vertices.push(e.inVertex());
+					enclosing.push(childScope);
+				}
+			}
+		}
+		log.info("AST index with {} vertices", index.scopes.size());
+		GraphCaches.put(graph, AstIndex.class, index);
+		return index;
+	}
+
+	/**
+	 * Returns the index of a graph, if it has been built.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	@Nullable
+	public static AstIndex get(@NonNull Graph graph) {
+		return GraphCaches.get(graph, AstIndex.class);
+	}
+
+	/**
+	 * @param id id of a vertex
+	 * @return true if the index knows the enclosing scope of the vertex
+	 */
+	public boolean contains(@NonNull Object id) {
+		return scopes.containsKey(id);
+	}
+
+	/**
+	 * @param id id of a vertex in the index
+	 * @return the enclosing function of the vertex, or null if it is not contained in a function
+	 */
+	@Nullable
+	public Vertex getFunction(@NonNull Object id) {
+		Scope scope = scopes.get(id);
+		return scope != null ? scope.function : null;
+	}
+
+	/**
+	 * Answers whether <code>sink</code> is reachable from <code>source</code> along the EOG of the function enclosing <code>source</code>. The
+	 * reachability of a function is computed on its first query and cached.
+	 *
+	 * @param source
+	 * @param sink
+	 * @return the answer, or an empty Optional if the index cannot answer the query
+	 */
+	@NonNull
+	public Optional<Boolean> isEogReachable(@NonNull Vertex source, @NonNull Vertex sink) {
+		Vertex function = getFunction(source.id());
+		if (function == null) {
+			return Optional.empty();
+		}
+		return eogReachability.computeIfAbsent(function.id(), id -> EogReachability.build(function)).isReachable(source, sink);
+	}
+
+	private static final class Scope {
+		static final Scope NONE = new Scope(null);
+
+		@Nullable
+		final Vertex function;
+
+		Scope(@Nullable Vertex function) {
+			this.function = function;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.DFG;
+
+/**
+ * Backward data flow closures of vertices, computed once per vertex and shared by all builtins evaluated on a graph.
+ * <p>
+ * The closure of a target vertex contains the ids of all vertices from which a path of at most {@link #MAX_DEPTH} DFG edges leads to the
+ * target. The target itself is only contained if it is part of a DFG cycle. Closures are stored as sorted arrays of vertex ids.
+ */
+public class DfgReachability {
+
+	/** Maximal number of DFG edges between a source and a target. */
+	public static final int MAX_DEPTH = 256;
+
+	// target vertex id -> sorted ids of the vertices flowing into the target
+	private final Map<Object, long[]> closures = new ConcurrentHashMap<>();
+
+	private DfgReachability() {
+	}
+
+	/**
+	 * Returns the data flow closures of a graph.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	@NonNull
+	public static DfgReachability of(@NonNull Graph graph) {
+		return GraphCaches.computeIfAbsent(graph, DfgReachability.class, DfgReachability::new);
+	}
+
+	/**
+	 * Returns true if there is a data flow from <code>source</code> to <code>target</code>.
+	 *
+	 * @param target
+	 * @param source
+	 * @return
+	 */
+	public boolean receivesValueFrom(@NonNull Vertex target, @NonNull Vertex source) {
+		return receivesValueFrom(target, source, visited -> {
+		});
+	}
+
+	/**
+	 * Returns true if there is a data flow from <code>source</code> to <code>target</code>.
+	 *
+	 * @param target
+	 * @param source
+	 * @param visited receives the number of vertices visited, if the closure of <code>target</code> has to be computed
+	 * @return
+	 */
+	public boolean receivesValueFrom(@NonNull Vertex target, @NonNull Vertex source, @NonNull LongConsumer visited) {
+		return Arrays.binarySearch(getSources(target, visited), (long) source.id()) >= 0;
+	}
+
+	/**
+	 * Returns the sorted ids of all vertices with a data flow to <code>target</code>.
+	 *
+	 * @param target
+	 * @return
+	 */
+	@NonNull
+	public long[] getSources(@NonNull Vertex target) {
+		return getSources(target, visited -> {
+		});
+	}
+
+	/**
+	 * Returns the sorted ids of all vertices with a data flow to <code>target</code>.
+	 *
+	 * @param target
+	 * @param visited receives the number of vertices visited, if the closure of <code>target</code> has to be computed
+	 * @return
+	 */
+	@NonNull
+	public long[] getSources(@NonNull Vertex target, @NonNull LongConsumer visited) {
+		long[] sources = closures.get(target.id());
+		if (sources != null) {
+			return sources;
+		}
+		return closures.computeIfAbsent(target.id(), id -> computeSources(target, visited));
+	}
+
+	private static long[] computeSources(@NonNull Vertex target, @NonNull LongConsumer visited) {
+		Set<Long> seen = new HashSet<>();
+		List<Vertex> level = List.of(target);
+		long expanded = 0;
+		for (int depth = 0; depth < MAX_DEPTH && !level.isEmpty(); depth++) {
+			List<Vertex> next = new ArrayList<>();
+			for (Vertex v : level) {
+				expanded++;
+				Iterator<Vertex> sources = v.vertices(Direction.IN, DFG);
+				while (sources.hasNext()) {
+					Vertex source = sources.next();
+					if (seen.add((long) source.id())) {
+						next.add(source);
+					}
+				}
+			}
+			level = next;
+		}
+		visited.accept(expanded);
+
+		long[] ids = new long[seen.size()];
+		int i = 0;
+		for (long id : seen) {
+			ids[i++] = id;
+		}
+		Arrays.sort(ids);
+		return ids;
+	}
+}
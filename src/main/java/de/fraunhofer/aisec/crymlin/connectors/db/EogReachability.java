@@ -0,0 +1,191 @@
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.EOG;
+
+/**
+ * Reachability along the EOG of a single function.
+ * <p>
+ * Covers all vertices reachable by EOG edges from the function declaration. The EOG of these vertices is condensed into its strongly connected
+ * components, and each component is labeled with the bitset of the components reachable from it. Since the covered vertices are closed under
+ * EOG successors, a query for a covered source is exact. Queries for other sources, or for functions with more than
+ * {@link #MAX_COMPONENTS} components, are not answered.
+ */
+public class EogReachability {
+
+	/** Upper bound for the number of components, as the labels need quadratic space. */
+	static final int MAX_COMPONENTS = 10_000;
+
+	// vertex id -> component
+	private final Map<Object, Integer> components;
+	// component -> components reachable by at least one EOG edge
+	private final BitSet[] reachable;
+
+	private EogReachability(@NonNull Map<Object, Integer> components, @NonNull BitSet[] reachable) {
+		this.components = components;
+		this.reachable = reachable;
+	}
+
+	/**
+	 * Builds the reachability labels of the EOG starting at a function declaration.
+	 *
+	 * @param function
+	 * @return
+	 */
+	@NonNull
+	public static EogReachability build(@NonNull Vertex function) {
+		// number the vertices reachable from the function
+		Map<Object, Integer> ids = new HashMap<>();
+		List<Vertex> vertices = new ArrayList<>();
+		List<int[]> successors = new ArrayList<>();
+		Deque<Vertex> worklist = new ArrayDeque<>();
+		ids.put(function.id(), 0);
+		vertices.add(function);
+		worklist.add(function);
+		while (!worklist.isEmpty()) {
+			Vertex v = worklist.poll();
+			List<Vertex> next = new ArrayList<>();
+			Iterator<Edge> eog = v.edges(Direction.OUT, EOG);
+			while (eog.hasNext()) {
+				next.add(eog.next().inVertex());
+			}
+			int[] succ = new int[next.size()];
+			for (int i = 0; i < succ.length; i++) {
+				Vertex w = next.get(i);
+				Integer id = ids.get(w.id());
+				if (id == null) {
+					id = vertices.size();
+					ids.put(w.id(), id);
+					vertices.add(w);
+					worklist.add(w);
+				}
+				succ[i] = id;
+			}
+			successors.add(succ);
+		}
+		int[][] succ = successors.toArray(new int[0][]);
+
+		// Tarjan's algorithm (iterative). Components are numbered in reverse topological order.
+		int n = succ.length;
+		int[] index = new int[n];
+		Arrays.fill(index, -1);
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int sp = 0;
+		int[] callStack = new int[n];
+		int[] edgePos = new int[n];
+		int[] component = new int[n];
+		int counter = 0;
+		int numComponents = 0;
+		for (int s = 0; s < n; s++) {
+			if (index[s] != -1) {
+				continue;
+			}
+			int csp = 0;
+			index[s] = low[s] = counter++;
+			stack[sp++] = s;
+			onStack[s] = true;
+			callStack[csp] = s;
+			edgePos[csp++] = 0;
+			while (csp > 0) {
+				int v = callStack[csp - 1];
+				if (edgePos[csp - 1] < succ[v].length) {
+					int w = succ[v][edgePos[csp - 1]++];
+					if (index[w] == -1) {
+						index[w] = low[w] = counter++;
+						stack[sp++] = w;
+						onStack[w] = true;
+						callStack[csp] = w;
+						edgePos[csp++] = 0;
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+				} else {
+					if (low[v] == index[v]) {
+						int w;
+						do {
+							w = stack[--sp];
+							onStack[w] = false;
+							component[w] = numComponents;
+						} while (w != v);
+						numComponents++;
+					}
+					csp--;
+					if (csp > 0) {
+						int u = callStack[csp - 1];
+						low[u] = Math.min(low[u], low[v]);
+					}
+				}
+			}
+		}
+
+		if (numComponents > MAX_COMPONENTS) {
+			return new EogReachability(Map.of(), new BitSet[0]);
+		}
+
+		// vertices of each component
+		List<List<Integer>> members = new ArrayList<>();
+		for (int c = 0; c < numComponents; c++) {
+			members.add(new ArrayList<>());
+		}
+		for (int v = 0; v < n; v++) {
+			members.get(component[v]).add(v);
+		}
+
+		// successors of a component have smaller numbers, so their labels are complete
+		BitSet[] reachable = new BitSet[numComponents];
+		for (int c = 0; c < numComponents; c++) {
+			BitSet r = new BitSet();
+			for (int v : members.get(c)) {
+				for (int w : succ[v]) {
+					int cw = component[w];
+					r.set(cw);
+					if (cw != c) {
+						r.or(reachable[cw]);
+					}
+				}
+			}
+			reachable[c] = r;
+		}
+
+		Map<Object, Integer> components = new HashMap<>();
+		for (Map.Entry<Object, Integer> entry : ids.entrySet()) {
+			components.put(entry.getKey(), component[entry.getValue()]);
+		}
+		return new EogReachability(components, reachable);
+	}
+
+	/**
+	 * Returns whether <code>sink</code> is reachable from <code>source</code> by at least one EOG edge.
+	 *
+	 * @param source
+	 * @param sink
+	 * @return the answer, or an empty Optional if the source is not covered
+	 */
+	@NonNull
+	public Optional<Boolean> isReachable(@NonNull Vertex source, @NonNull Vertex sink) {
+		Integer from = components.get(source.id());
+		if (from == null) {
+			return Optional.empty();
+		}
+		Integer to = components.get(sink.id());
+		// all vertices reachable from a covered vertex are covered
+		return Optional.of(to != null && reachable[from].get(to));
+	}
+}
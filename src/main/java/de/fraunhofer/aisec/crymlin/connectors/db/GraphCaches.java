@@ -0,0 +1,83 @@
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Data derived from a graph, such as indices and memoized query results, with at most one instance per graph and class.
+ * <p>
+ * The caches hold vertices, which in turn reference their graph, so they are not released together with the graph. They must be dropped
+ * explicitly by {@link #clear(Graph)} when the graph is closed, as {@link OverflowDatabase#close()} does.
+ */
+public final class GraphCaches {
+
+	private static final Map<Graph, Map<Class<?>, Object>> caches = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private GraphCaches() {
+		// Do not instantiate.
+	}
+
+	/**
+	 * @param graph
+	 * @param type
+	 * @return the cache of the given class for a graph, or null if there is none
+	 */
+	@Nullable
+	public static <T> T get(@NonNull Graph graph, @NonNull Class<T> type) {
+		Map<Class<?>, Object> ofGraph = caches.get(graph);
+		return ofGraph != null ? type.cast(ofGraph.get(type)) : null;
+	}
+
+	/**
+	 * Returns the cache of the given class for a graph. The cache is created by the supplier, if there is none yet.
+	 *
+	 * @param graph
+	 * @param type
+	 * @param supplier
+	 * @return
+	 */
+	@NonNull
+	public static <T> T computeIfAbsent(@NonNull Graph graph, @NonNull Class<T> type, @NonNull Supplier<T> supplier) {
+		return type.cast(caches.computeIfAbsent(graph, g -> new ConcurrentHashMap<>()).computeIfAbsent(type, t -> supplier.get()));
+	}
+
+	/**
+	 * Registers the cache of the given class for a graph, replacing a previous one.
+	 *
+	 * @param graph
+	 * @param type
+	 * @param cache
+	 */
+	public static <T> void put(@NonNull Graph graph, @NonNull Class<T> type, @NonNull T cache) {
+		caches.computeIfAbsent(graph, g -> new ConcurrentHashMap<>()).put(type, cache);
+	}
+
+	/**
+	 * Drops the cache of the given class for a graph.
+	 *
+	 * @param graph
+	 * @param type
+	 */
+	public static void remove(@NonNull Graph graph, @NonNull Class<?> type) {
+		Map<Class<?>, Object> ofGraph = caches.get(graph);
+		if (ofGraph != null) {
+			ofGraph.remove(type);
+		}
+	}
+
+	/**
+	 * Drops all caches of a graph. Must be called when the graph is closed or its contents are replaced.
+	 *
+	 * @param graph
+	 */
+	public static void clear(@NonNull Graph graph) {
+		caches.remove(graph);
+	}
+}
@@ -0,0 +1,63 @@
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dense ids of vertex labels and, for each CPG class, the set of ids of the labels of the class and all its subclasses.
+ * <p>
+ * Checking whether a vertex is an instance of a CPG class is a lookup of its label id in the bitset of the class, which does not allocate.
+ * The bitset of a class is computed from {@link OverflowDatabase#getSubclasses(Class)} on first use. Thread-safe.
+ */
+public final class LabelRegistry {
+
+	private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+	private static final AtomicInteger nextId = new AtomicInteger();
+	private static final Map<Class<?>, BitSet> subclasses = new ConcurrentHashMap<>();
+
+	private LabelRegistry() {
+	}
+
+	/**
+	 * Returns the dense id of a label.
+	 *
+	 * @param label
+	 * @return
+	 */
+	public static int idOf(@NonNull String label) {
+		return ids.computeIfAbsent(label, l -> nextId.getAndIncrement());
+	}
+
+	/**
+	 * Returns true if the label of the vertex is the simple name of the given class or of one of its subclasses.
+	 *
+	 * @param v
+	 * @param cpgClass
+	 * @return
+	 */
+	public static boolean hasLabel(@NonNull Vertex v, @NonNull Class<?> cpgClass) {
+		return subclassesOf(cpgClass).get(idOf(v.label()));
+	}
+
+	@NonNull
+	private static BitSet subclassesOf(@NonNull Class<?> cpgClass) {
+		BitSet labels = subclasses.get(cpgClass);
+		if (labels == null) {
+			BitSet computed = new BitSet();
+			computed.set(idOf(cpgClass.getSimpleName()));
+			for (String subclass : OverflowDatabase.getSubclasses(cpgClass)) {
+				computed.set(idOf(subclass));
+			}
+			labels = subclasses.putIfAbsent(cpgClass, computed);
+			if (labels == null) {
+				labels = computed;
+			}
+		}
+		return labels;
+	}
+}
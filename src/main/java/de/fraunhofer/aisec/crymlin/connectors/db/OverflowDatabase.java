@@ -92,7 +92,8 @@ public class OverflowDatabase implements Database<Node> {
 	private static final Map<String, Boolean> mapsToRelationship = new HashMap<>();
 	private static final Map<String, Boolean> mapsToProperty = new HashMap<>();
 	private static final Map<String, NodeLayoutInformation> layoutInformation = new HashMap<>();
-	private static final Map<String, String[]> subClasses = new HashMap<>();
+	// accessed by rules evaluated in parallel
+	private static final Map<String, String[]> subClasses = new ConcurrentHashMap<>();
 	private static final Map<String, String[]> superClasses = new HashMap<>();
 
 	// Scan all classes in package
@@ -110,6 +111,11 @@ public class OverflowDatabase implements Database<Node> {
 	private Map<Object, Map<String, Set<Object>>> edgesCache = new HashMap<>();
 	private final Map<Node, Vertex> nodeToVertex = new IdentityHashMap<>(); // No cache.
 	private final Map<Long, Node> nodesCache = new HashMap<>(); // Key is actually v.id() (Long)
+	// completely restored nodes of nodesCache, which are read without holding the lock of vertexToNode
+	private final Map<Long, Node> restoredNodes = new ConcurrentHashMap<>();
+	// ids of the nodes put into nodesCache by the current (outermost) call of vertexToNode
+	private final List<Long> pendingNodes = new ArrayList<>();
+	private int restoreDepth;
 	private final Set<Node> saved = new HashSet<>();
 
 	public OverflowDatabase(ServerConfiguration config) {
@@ -177,6 +183,7 @@ public class OverflowDatabase implements Database<Node> {
 		mapsToProperty.clear();
 		mapsToRelationship.clear();
 		nodesCache.clear();
+		restoredNodes.clear();
 		edgesCache.clear();
 
 		// Note: Do NOT clear "layoutInformation". They will be needed for queries.
@@ -252,11 +259,40 @@ public class OverflowDatabase implements Database<Node> {
 	/**
 	 * Constructs a native Node object from a given Vertex or returns a cached Node object.
 	 *
+	 * Restoring a node is synchronized, as nodes are put into the cache before they are completely restored and rules may be evaluated in
+	 * parallel. Nodes which have been completely restored are returned without locking.
+	 *
 	 * @return Null, if the Vertex could not be converted into a native object.
 	 */
 	@Override
 	@Nullable
 	public Node vertexToNode(Vertex v) {
+		Node restored = restoredNodes.get((Long) v.id());
+		if (restored != null) {
+			return restored;
+		}
+		synchronized (this) {
+			restoreDepth++;
+			try {
+				return restoreNode(v);
+			}
+			finally {
+				if (--restoreDepth == 0) {
+					// all nodes restored by this call are complete now
+					for (Long id : pendingNodes) {
+						Node node = nodesCache.get(id);
+						if (node != null) {
+							restoredNodes.put(id, node);
+						}
+					}
+					pendingNodes.clear();
+				}
+			}
+		}
+	}
+
+	@Nullable
+	private Node restoreNode(Vertex v) {
 		// avoid loops
 		if (nodesCache.containsKey((Long) v.id())) {
 			return nodesCache.get((Long) v.id());
@@ -277,6 +313,7 @@ public class OverflowDatabase implements Database<Node> {
 			defaultConstructor.setAccessible(true);
 			Node node = (Node) defaultConstructor.newInstance();
 			nodesCache.put((Long) v.id(), node);
+			pendingNodes.add((Long) v.id());
 
 			for (Field f : getFieldsIncludingSuperclasses(targetClass)) {
 				f.setAccessible(true);
@@ -478,6 +515,7 @@ public class OverflowDatabase implements Database<Node> {
 		List<Object> props = linearize(properties);
 
 		/* Create a new vertex. Note that this will auto-generate a new id() for the vertex and thus this method should only be called once per Node. */
+		VertexIndex.invalidate(graph);
 		Vertex result = graph.addVertex(props.toArray());
 		nodeToVertex.put(n, result);
 
@@ -929,6 +967,11 @@ public class OverflowDatabase implements Database<Node> {
 		// Clear saved nodes.
 		this.saved.clear();
 
+		// Drop indices and memoized queries of the graph, they reference its vertices
+		if (this.graph != null) {
+			GraphCaches.clear(this.graph);
+		}
+
 		// Close graph
 		try {
 			this.graph.traversal().V().drop();
@@ -0,0 +1,142 @@
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import de.fraunhofer.aisec.analysis.utils.Utils;
+import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.cpg.graph.types.Type;
+import de.fraunhofer.aisec.cpg.graph.types.UnknownType;
+import de.fraunhofer.aisec.mark.markDsl.Parameter;
+import de.fraunhofer.aisec.markmodel.Constants;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoized version of {@link Utils#isSubTypeOf(Set, Parameter)} for type vertices.
+ * <p>
+ * The supertype closure of a type vertex is materialized once and reduced to its non-qualified type names. Results are cached per type
+ * vertex and list of MARK types, so repeated signature matching does not touch {@link Type} nodes at all. There is one matcher per graph,
+ * as vertex ids are only unique within a graph.
+ */
+public class TypeMatcher {
+
+	private final Database<Node> db;
+
+	// type vertex id -> supertype closure
+	private final Map<Object, TypeClosure> closures = new ConcurrentHashMap<>();
+
+	// MARK types -> normalized MARK types
+	private final Map<List<String>, MarkTypes> markTypes = new ConcurrentHashMap<>();
+
+	// type vertex id -> MARK types -> match
+	private final Map<Object, Map<List<String>, Boolean>> matches = new ConcurrentHashMap<>();
+
+	private TypeMatcher(@NonNull Database<Node> db) {
+		this.db = db;
+	}
+
+	/**
+	 * Returns the matcher of the graph of a database.
+	 *
+	 * @param db
+	 * @return
+	 */
+	@NonNull
+	public static TypeMatcher of(@NonNull Database<Node> db) {
+		return GraphCaches.computeIfAbsent(db.getGraph(), TypeMatcher.class, () -> new TypeMatcher(db));
+	}
+
+	/**
+	 * Returns true if any of the given types (or their supertypes) is equal to a type of the MARK parameter. Same semantics as
+	 * {@link Utils#isSubTypeOf(Set, Parameter)}.
+	 *
+	 * @param typeVertices  vertices of source types
+	 * @param markParameter
+	 * @return
+	 */
+	public boolean isSubTypeOf(@NonNull Set<Vertex> typeVertices, @NonNull Parameter markParameter) {
+		if (markParameter.getVar().equals(Constants.ANY_TYPE) || markParameter.getTypes().isEmpty()) {
+			return true;
+		}
+
+		List<String> types = List.copyOf(markParameter.getTypes());
+		for (Vertex v : typeVertices) {
+			boolean match = matches.computeIfAbsent(v.id(), id -> new ConcurrentHashMap<>())
+					.computeIfAbsent(types, t -> getClosure(v).matches(markTypes.computeIfAbsent(t, MarkTypes::new)));
+			if (match) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private TypeClosure getClosure(@NonNull Vertex v) {
+		return closures.computeIfAbsent(v.id(), id -> {
+			Node node = db.vertexToNode(v);
+			return node instanceof Type ? new TypeClosure((Type) node) : new TypeClosure();
+		});
+	}
+
+	/**
+	 * Non-qualified names of a type and all of its supertypes.
+	 */
+	private static final class TypeClosure {
+		private final Set<String> names = new HashSet<>();
+		private boolean string;
+		private boolean unknown;
+
+		TypeClosure() {
+		}
+
+		TypeClosure(@NonNull Type type) {
+			Set<Type> seen = new HashSet<>();
+			Deque<Type> worklist = new ArrayDeque<>();
+			worklist.add(type);
+			while (!worklist.isEmpty()) {
+				Type t = worklist.pop();
+				if (!seen.add(t)) {
+					continue;
+				}
+				names.add(Utils.toNonQualifiedName(t.getTypeName()));
+				string |= Utils.isStringType(t);
+				unknown |= t instanceof UnknownType;
+				worklist.addAll(t.getSuperTypes());
+			}
+		}
+
+		boolean matches(@NonNull MarkTypes markTypes) {
+			// If type could not be determined, we err on the false positive side.
+			if (unknown || (string && markTypes.string)) {
+				return true;
+			}
+			for (String name : markTypes.names) {
+				if (names.contains(name)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Non-qualified names of the types of a MARK parameter.
+	 */
+	private static final class MarkTypes {
+		private final Set<String> names = new HashSet<>();
+		private final boolean string;
+
+		MarkTypes(@NonNull List<String> types) {
+			for (String type : types) {
+				names.add(Utils.toNonQualifiedName(type));
+			}
+			// There are various representations of "string" and we map them manually.
+			this.string = names.stream().anyMatch(t -> t.equalsIgnoreCase("string"));
+		}
+	}
+}
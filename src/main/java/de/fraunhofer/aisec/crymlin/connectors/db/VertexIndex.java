@@ -0,0 +1,145 @@
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.NAME;
+
+/**
+ * Index of the vertices of a graph by label and by the values of frequently queried properties, built in a single pass over the graph.
+ * <p>
+ * The index is built after the translation result has been persisted (see {@link #build(Graph)}) and is dropped as soon as a vertex is
+ * added to the graph. It serves the start steps of traversals (see {@link de.fraunhofer.aisec.crymlin.dsl.CrymlinOptimizationStrategy})
+ * and provides the number of vertices per label and property value to order their filters.
+ * <p>
+ * Apart from added vertices, the index is a snapshot of the graph as imported: the analysis does not change properties of vertices or remove
+ * vertices afterwards, and the index does not track such changes. Code which does must call {@link #invalidate(Graph)} (or
+ * {@link #build(Graph)} again) afterwards.
+ */
+public class VertexIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(VertexIndex.class);
+
+	/** Properties whose values are indexed. */
+	public static final Set<String> INDEXED_KEYS = Set.of(NAME, "fqn");
+
+	// label -> vertices
+	private final Map<String, List<Vertex>> byLabel = new HashMap<>();
+
+	// indexed key -> value -> vertices
+	private final Map<String, Map<Object, List<Vertex>>> byProperty = new HashMap<>();
+
+	// indexed key -> average number of vertices per value
+	private final Map<String, Long> averageCounts = new HashMap<>();
+
+	private long size;
+
+	private VertexIndex() {
+	}
+
+	/**
+	 * Builds the index of a graph and registers it, replacing a previous index of the graph.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	@NonNull
+	public static VertexIndex build(@NonNull Graph graph) {
+		VertexIndex index = new VertexIndex();
+		for (String key : INDEXED_KEYS) {
+			index.byProperty.put(key, new HashMap<>());
+		}
+		Iterator<Vertex> it = graph.vertices();
+		while (it.hasNext()) {
+			Vertex v = it.next();
+			index.size++;
+			index.byLabel.computeIfAbsent(v.label(), l -> new ArrayList<>()).add(v);
+			for (String key : INDEXED_KEYS) {
+				Object value = v.property(key).orElse(null);
+				if (value != null) {
+					index.byProperty.get(key).computeIfAbsent(value, x -> new ArrayList<>()).add(v);
+				}
+			}
+		}
+		for (Map.Entry<String, Map<Object, List<Vertex>>> entry : index.byProperty.entrySet()) {
+			long total = 0;
+			for (List<Vertex> vertices : entry.getValue().values()) {
+				total += vertices.size();
+			}
+			if (!entry.getValue().isEmpty()) {
+				index.averageCounts.put(entry.getKey(), total / entry.getValue().size());
+			}
+		}
+		log.info("Vertex index with {} vertices and {} labels", index.size, index.byLabel.size());
+		GraphCaches.put(graph, VertexIndex.class, index);
+		return index;
+	}
+
+	/**
+	 * Returns the index of a graph, if it has been built and the graph has not changed since.
+	 *
+	 * @param graph
+	 * @return
+	 */
+	@Nullable
+	public static VertexIndex get(@NonNull Graph graph) {
+		return GraphCaches.get(graph, VertexIndex.class);
+	}
+
+	/**
+	 * Drops the index of a graph. Must be called whenever vertices are added to or removed from the graph, or indexed properties change.
+	 *
+	 * @param graph
+	 */
+	public static void invalidate(@NonNull Graph graph) {
+		GraphCaches.remove(graph, VertexIndex.class);
+	}
+
+	/**
+	 * @return the number of vertices in the graph
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @param label
+	 * @return the vertices with the given label
+	 */
+	@NonNull
+	public List<Vertex> getByLabel(@NonNull String label) {
+		return byLabel.getOrDefault(label, List.of());
+	}
+
+	/**
+	 * @param key   one of {@link #INDEXED_KEYS}
+	 * @param value
+	 * @return the vertices whose property <code>key</code> equals <code>value</code>
+	 */
+	@NonNull
+	public List<Vertex> getByProperty(@NonNull String key, @NonNull Object value) {
+		Map<Object, List<Vertex>> values = byProperty.get(key);
+		return values != null ? values.getOrDefault(value, List.of()) : List.of();
+	}
+
+	/**
+	 * Estimated number of vertices with some value of an indexed property, i.e. the average number of vertices per value.
+	 *
+	 * @param key one of {@link #INDEXED_KEYS}
+	 * @return
+	 */
+	public long getAverageCount(@NonNull String key) {
+		return averageCounts.getOrDefault(key, size);
+	}
+}
@@ -188,7 +188,11 @@ public class CpgDocumentService implements TextDocumentService {
 			for (Region reg : f.getRegions()) {
 				Diagnostic diagnostic = new Diagnostic();
 				// TODO Replace HINT for verified findings with Code Lens
-				diagnostic.setSeverity(f.isProblem() ? DiagnosticSeverity.Error : DiagnosticSeverity.Information);
+				if (f.isInconclusive()) {
+					diagnostic.setSeverity(DiagnosticSeverity.Warning);
+				} else {
+					diagnostic.setSeverity(f.isProblem() ? DiagnosticSeverity.Error : DiagnosticSeverity.Information);
+				}
 
 				// Get human readable description, if available
 				String msg = FindingDescription.getInstance().getDescriptionShort(f.getOnfailIdentifier());
@@ -15,6 +15,7 @@ public class CrymlinConstants {
 	public static final String EOG = "EOG";
 	public static final String FIELDS = "FIELDS";
 	public static final String INITIALIZER = "INITIALIZER";
+	public static final String INVOKES = "INVOKES";
 	public static final String NAME = "name";
 	public static final String END_COLUMN = "endColumn";
 	public static final String END_LINE = "endLine";
@@ -0,0 +1,156 @@
+package de.fraunhofer.aisec.crymlin.dsl;
+
+import de.fraunhofer.aisec.crymlin.connectors.db.VertexIndex;
+import org.apache.tinkerpop.gremlin.process.traversal.Compare;
+import org.apache.tinkerpop.gremlin.process.traversal.Contains;
+import org.apache.tinkerpop.gremlin.process.traversal.step.HasContainerHolder;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.GraphStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+import org.apache.tinkerpop.gremlin.util.iterator.IteratorUtils;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Start step <code>V()</code> with the <code>has</code> filters that follow it, as created by {@link CrymlinOptimizationStrategy}.
+ * <p>
+ * Instead of scanning all vertices, the step starts from the smallest set of vertices the {@link VertexIndex} of the graph returns for one of
+ * its filters: a label, or an equality on an indexed property. The remaining filters are tested in order of their estimated selectivity. If
+ * the graph has no (valid) index when the traversal is executed, all vertices are scanned as before.
+ * <p>
+ * All filters, including the one answered by the index, are tested on each candidate. Vertices whose properties changed after the index
+ * was built are therefore never returned wrongly, but may be missed (see {@link VertexIndex}).
+ */
+public class CrymlinGraphStep<S> extends GraphStep<S, Vertex> implements HasContainerHolder {
+
+	private final List<HasContainer> hasContainers = new ArrayList<>();
+
+	public CrymlinGraphStep(@NonNull GraphStep<S, Vertex> originalGraphStep) {
+		super(originalGraphStep.getTraversal(), Vertex.class, originalGraphStep.isStartStep(), originalGraphStep.getIds());
+		originalGraphStep.getLabels().forEach(this::addLabel);
+		this.setIteratorSupplier(this::vertices);
+	}
+
+	private Iterator<Vertex> vertices() {
+		Graph graph = this.getTraversal().getGraph().orElseThrow();
+		if (this.getIds().length > 0) {
+			return IteratorUtils.filter(graph.vertices(this.getIds()), v -> HasContainer.testAll(v, hasContainers));
+		}
+		VertexIndex index = VertexIndex.get(graph);
+		if (index == null) {
+			return IteratorUtils.filter(graph.vertices(), v -> HasContainer.testAll(v, hasContainers));
+		}
+
+		List<HasContainer> filters = new ArrayList<>(hasContainers);
+		filters.sort(Comparator.comparingLong(hc -> estimate(index, hc)));
+
+		Collection<Vertex> start = null;
+		if (!filters.isEmpty()) {
+			start = lookup(index, filters.get(0));
+		}
+		Iterator<Vertex> candidates = start != null ? start.iterator() : graph.vertices();
+		return IteratorUtils.filter(candidates, v -> HasContainer.testAll(v, filters));
+	}
+
+	/**
+	 * Returns the vertices matching a filter, if the index can answer it.
+	 */
+	@Nullable
+	private static Collection<Vertex> lookup(@NonNull VertexIndex index, @NonNull HasContainer hasContainer) {
+		Collection<?> values = getEqualValues(hasContainer);
+		if (values == null) {
+			return null;
+		}
+		List<Vertex> result = new ArrayList<>();
+		if (hasContainer.getKey().equals(T.label.getAccessor())) {
+			for (Object label : values) {
+				if (label instanceof String) {
+					result.addAll(index.getByLabel((String) label));
+				}
+			}
+			return result;
+		}
+		if (VertexIndex.INDEXED_KEYS.contains(hasContainer.getKey())) {
+			for (Object value : values) {
+				if (!(value instanceof String)) {
+					// numbers are compared by value, not by equality
+					return null;
+				}
+				result.addAll(index.getByProperty(hasContainer.getKey(), value));
+			}
+			return result;
+		}
+		return null;
+	}
+
+	/**
+	 * Estimated number of vertices passing a filter, from the cardinalities of the index.
+	 * <p>
+	 * Filters which the index can answer are estimated by at most the number of vertices, all other filters rank behind them, so that the first
+	 * filter is always answered by the index if any filter can be. Of the other filters, equalities are tested first.
+	 */
+	private static long estimate(@NonNull VertexIndex index, @NonNull HasContainer hasContainer) {
+		Collection<?> values = getEqualValues(hasContainer);
+		if (values == null) {
+			return index.size() + 2;
+		}
+		long count = 0;
+		if (hasContainer.getKey().equals(T.label.getAccessor())) {
+			for (Object label : values) {
+				count += label instanceof String ? index.getByLabel((String) label).size() : 0;
+			}
+			return Math.min(count, index.size());
+		}
+		if (VertexIndex.INDEXED_KEYS.contains(hasContainer.getKey()) && values.stream().allMatch(String.class::isInstance)) {
+			return Math.min(values.size() * index.getAverageCount(hasContainer.getKey()), index.size());
+		}
+		// equality on a property without statistics
+		return index.size() + 1;
+	}
+
+	/**
+	 * Returns the distinct values of an <code>eq</code> or <code>within</code> filter, or null for other filters.
+	 */
+	@Nullable
+	private static Collection<?> getEqualValues(@NonNull HasContainer hasContainer) {
+		if (hasContainer.getBiPredicate() == Compare.eq && hasContainer.getValue() != null) {
+			return Collections.singletonList(hasContainer.getValue());
+		}
+		if (hasContainer.getBiPredicate() == Contains.within && hasContainer.getValue() instanceof Collection) {
+			// e.g. hasLabel(CallExpression, subclasses of CallExpression) may name a label twice
+			return new LinkedHashSet<>((Collection<?>) hasContainer.getValue());
+		}
+		return null;
+	}
+
+	@Override
+	public List<HasContainer> getHasContainers() {
+		return Collections.unmodifiableList(this.hasContainers);
+	}
+
+	@Override
+	public void addHasContainer(final HasContainer hasContainer) {
+		this.hasContainers.add(hasContainer);
+	}
+
+	@Override
+	public String toString() {
+		return this.hasContainers.isEmpty() ? super.toString() : StringFactory.stepString(this, this.hasContainers);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode() ^ this.hasContainers.hashCode();
+	}
+}
@@ -0,0 +1,84 @@
+package de.fraunhofer.aisec.crymlin.dsl;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.step.HasContainerHolder;
+import org.apache.tinkerpop.gremlin.process.traversal.step.filter.HasStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.GraphStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.NoOpBarrierStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.AbstractTraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.process.traversal.strategy.optimization.TinkerGraphCountStrategy;
+import org.apache.tinkerpop.gremlin.tinkergraph.process.traversal.strategy.optimization.TinkerGraphStepStrategy;
+
+import java.util.Set;
+
+/**
+ * Rewrites <code>V().has...()</code> chains, as created by the steps of {@link CrymlinTraversalSourceDsl} and by queries typed into the
+ * console, into a {@link CrymlinGraphStep}.
+ * <p>
+ * The <code>has</code> filters directly following a vertex start step without ids are folded into the start step, which answers them from
+ * the {@link de.fraunhofer.aisec.crymlin.connectors.db.VertexIndex} of the graph instead of scanning all vertices.
+ * <p>
+ * Graph providers replace the start step by their own steps, which this strategy does not rewrite. It is therefore ordered explicitly
+ * against the strategies of the providers used with Crymlin (see {@link #applyPrior()} and {@link #applyPost()}). The start steps of other
+ * providers are left alone.
+ */
+public final class CrymlinOptimizationStrategy extends AbstractTraversalStrategy<TraversalStrategy.ProviderOptimizationStrategy>
+		implements TraversalStrategy.ProviderOptimizationStrategy {
+
+	private static final CrymlinOptimizationStrategy INSTANCE = new CrymlinOptimizationStrategy();
+
+	private CrymlinOptimizationStrategy() {
+	}
+
+	public static CrymlinOptimizationStrategy instance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Counting strategies replace <code>V().count()</code> by a count of all vertices if the start step is followed by no other filter, which
+	 * is wrong once the filters have been folded into the start step.
+	 */
+	@Override
+	public Set<Class<? extends ProviderOptimizationStrategy>> applyPrior() {
+		return Set.of(TinkerGraphCountStrategy.class);
+	}
+
+	/**
+	 * Start step strategies of the providers would otherwise replace the start step first.
+	 */
+	@Override
+	public Set<Class<? extends ProviderOptimizationStrategy>> applyPost() {
+		return Set.of(TinkerGraphStepStrategy.class);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void apply(final Traversal.Admin<?, ?> traversal) {
+		for (final GraphStep<?, ?> originalGraphStep : TraversalHelper.getStepsOfClass(GraphStep.class, traversal)) {
+			if (originalGraphStep.getClass() != GraphStep.class || !originalGraphStep.returnsVertex() || originalGraphStep.getIds().length > 0) {
+				continue;
+			}
+
+			final CrymlinGraphStep<?> crymlinGraphStep = new CrymlinGraphStep<>((GraphStep<Object, Vertex>) originalGraphStep);
+			TraversalHelper.replaceStep(originalGraphStep, crymlinGraphStep, traversal);
+			Step<?, ?> currentStep = crymlinGraphStep.getNextStep();
+			while (currentStep instanceof HasStep || currentStep instanceof NoOpBarrierStep) {
+				if (currentStep instanceof HasStep) {
+					for (final HasContainer hasContainer : ((HasContainerHolder) currentStep).getHasContainers()) {
+						if (!GraphStep.processHasContainerIds(crymlinGraphStep, hasContainer)) {
+							crymlinGraphStep.addHasContainer(hasContainer);
+						}
+					}
+					TraversalHelper.copyLabels(currentStep, currentStep.getPreviousStep(), false);
+					traversal.removeStep(currentStep);
+				}
+				currentStep = currentStep.getNextStep();
+			}
+		}
+	}
+}
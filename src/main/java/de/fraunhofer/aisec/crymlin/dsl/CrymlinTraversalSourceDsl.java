@@ -52,7 +52,9 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	}
 
 	public CrymlinTraversalSourceDsl(final Graph graph) {
-		super(graph);
+		super(graph, TraversalStrategies.GlobalCache.getStrategies(graph.getClass())
+				.clone()
+				.addStrategies(CrymlinOptimizationStrategy.instance()));
 	}
 
 	public CrymlinTraversalSourceDsl(final RemoteConnection connection) {
@@ -3,10 +3,13 @@ package de.fraunhofer.aisec.markmodel;
 
 import de.fraunhofer.aisec.analysis.markevaluation.ExpressionHelper;
 import de.fraunhofer.aisec.analysis.structures.Pair;
+import de.fraunhofer.aisec.mark.markDsl.Expression;
 import de.fraunhofer.aisec.mark.markDsl.RuleStatement;
+import de.fraunhofer.aisec.markmodel.fsm.OrderDFA;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class MRule {
@@ -24,6 +27,8 @@ public class MRule {
 	 * todo maybe we should not allow rules with NULL references here, as they cannot be evaluated anyway
 	 */
 	private Map<String, Pair<String, MEntity>> entityReferences;
+	/** compiled order expressions of this rule, see {@link #getOrderDFA(Expression)} */
+	private final Map<Expression, OrderDFA> orderDFAs = new ConcurrentHashMap<>();
 
 	public MRule(@NonNull String name) {
 		this.name = name;
@@ -83,4 +88,14 @@ public class MRule {
 	public Map<String, Pair<String, MEntity>> getEntityReferences() {
 		return entityReferences;
 	}
+
+	/**
+	 * Returns the DFA of an order expression of this rule. The DFA is compiled once and shared by all contexts of this rule.
+	 *
+	 * @param orderExp the expression inside of <code>order</code>
+	 * @return
+	 */
+	public OrderDFA getOrderDFA(@NonNull Expression orderExp) {
+		return orderDFAs.computeIfAbsent(orderExp, OrderDFA::of);
+	}
 }
@@ -0,0 +1,248 @@
+package de.fraunhofer.aisec.markmodel.fsm;
+
+import de.fraunhofer.aisec.mark.markDsl.Expression;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Deterministic, minimal, table-driven automaton for an order expression.
+ * <p>
+ * The automaton is created from the {@link FSM} of the order expression using subset construction and is then minimized. A state represents the set of
+ * {@link Node}s which may follow next, exactly as the FSM is used by the order evaluation: an op is allowed, if any of these nodes has this op, the FSM
+ * then continues with the successors of all matching nodes. A state is accepting, if it contains the END node.
+ * <p>
+ * States and ops (symbols) are plain ints, {@link #step(int, int)} is a single table lookup.
+ */
+public class OrderDFA {
+
+	/** Returned by {@link #step(int, int)} and {@link #getSymbol(String)} if an op is not allowed/not used in the order. */
+	public static final int ERROR = -1;
+
+	private final Map<String, Integer> symbols;
+	private final int start;
+	// delta[state][symbol], ERROR if the op is not allowed in this state
+	private final int[][] delta;
+	private final boolean[] accepting;
+	// sorted names of the FSM nodes of each state
+	private final String[][] expected;
+
+	private OrderDFA(Map<String, Integer> symbols, int start, int[][] delta, boolean[] accepting, String[][] expected) {
+		this.symbols = symbols;
+		this.start = start;
+		this.delta = delta;
+		this.accepting = accepting;
+		this.expected = expected;
+	}
+
+	/**
+	 * Compiles the given order expression (i.e., the expression inside of <code>order</code>).
+	 *
+	 * @param seq
+	 * @return
+	 */
+	public static OrderDFA of(@NonNull Expression seq) {
+		FSM fsm = new FSM();
+		fsm.sequenceToFSM(seq);
+		return of(fsm);
+	}
+
+	/**
+	 * Compiles the given FSM.
+	 *
+	 * @param fsm
+	 * @return
+	 */
+	public static OrderDFA of(@NonNull FSM fsm) {
+		// number all FSM nodes. Nodes are compared by identity, as Node.equals() compares names only
+		List<Node> nodes = new ArrayList<>();
+		Map<Node, Integer> nodeIds = new IdentityHashMap<>();
+		Deque<Node> work = new ArrayDeque<>(fsm.getStart());
+		while (!work.isEmpty()) {
+			Node n = work.pop();
+			if (nodeIds.containsKey(n)) {
+				continue;
+			}
+			nodeIds.put(n, nodes.size());
+			nodes.add(n);
+			work.addAll(n.getSuccessors());
+		}
+
+		Map<String, Integer> symbols = new HashMap<>();
+		for (Node n : nodes) {
+			symbols.putIfAbsent(n.getOp(), symbols.size());
+		}
+
+		// subset construction
+		List<BitSet> subsets = new ArrayList<>();
+		Map<BitSet, Integer> subsetIds = new HashMap<>();
+		List<int[]> transitions = new ArrayList<>();
+		BitSet startSet = new BitSet();
+		fsm.getStart().forEach(n -> startSet.set(nodeIds.get(n)));
+		subsetIds.put(startSet, 0);
+		subsets.add(startSet);
+		for (int i = 0; i < subsets.size(); i++) {
+			BitSet current = subsets.get(i);
+			int[] row = new int[symbols.size()];
+			Arrays.fill(row, ERROR);
+			BitSet[] targets = new BitSet[symbols.size()];
+			for (int n = current.nextSetBit(0); n >= 0; n = current.nextSetBit(n + 1)) {
+				int symbol = symbols.get(nodes.get(n).getOp());
+				if (targets[symbol] == null) {
+					targets[symbol] = new BitSet();
+				}
+				for (Node succ : nodes.get(n).getSuccessors()) {
+					targets[symbol].set(nodeIds.get(succ));
+				}
+			}
+			for (int symbol = 0; symbol < targets.length; symbol++) {
+				if (targets[symbol] != null) {
+					Integer target = subsetIds.get(targets[symbol]);
+					if (target == null) {
+						target = subsets.size();
+						subsetIds.put(targets[symbol], target);
+						subsets.add(targets[symbol]);
+					}
+					row[symbol] = target;
+				}
+			}
+			transitions.add(row);
+		}
+
+		int numStates = subsets.size();
+		boolean[] accepting = new boolean[numStates];
+		for (int s = 0; s < numStates; s++) {
+			BitSet subset = subsets.get(s);
+			for (int n = subset.nextSetBit(0); n >= 0; n = subset.nextSetBit(n + 1)) {
+				accepting[s] |= nodes.get(n).isEnd();
+			}
+		}
+
+		// minimization by partition refinement (Moore). ERROR is kept apart, as it is reported differently than any other state.
+		int[] block = new int[numStates];
+		for (int s = 0; s < numStates; s++) {
+			block[s] = accepting[s] ? 1 : 0;
+		}
+		int numBlocks;
+		while (true) {
+			Map<List<Integer>, Integer> signatures = new HashMap<>();
+			int[] newBlock = new int[numStates];
+			for (int s = 0; s < numStates; s++) {
+				List<Integer> signature = new ArrayList<>(symbols.size() + 1);
+				signature.add(block[s]);
+				for (int target : transitions.get(s)) {
+					signature.add(target == ERROR ? ERROR : block[target]);
+				}
+				Integer id = signatures.get(signature);
+				if (id == null) {
+					id = signatures.size();
+					signatures.put(signature, id);
+				}
+				newBlock[s] = id;
+			}
+			boolean stable = signatures.size() == countBlocks(block);
+			block = newBlock;
+			if (stable) {
+				numBlocks = signatures.size();
+				break;
+			}
+		}
+
+		int[][] delta = new int[numBlocks][];
+		boolean[] acceptingMin = new boolean[numBlocks];
+		String[][] expected = new String[numBlocks][];
+		for (int s = 0; s < numStates; s++) {
+			int b = block[s];
+			if (delta[b] != null) {
+				continue;
+			}
+			int[] row = transitions.get(s).clone();
+			for (int symbol = 0; symbol < row.length; symbol++) {
+				if (row[symbol] != ERROR) {
+					row[symbol] = block[row[symbol]];
+				}
+			}
+			delta[b] = row;
+			acceptingMin[b] = accepting[s];
+			TreeSet<String> names = new TreeSet<>();
+			BitSet subset = subsets.get(s);
+			for (int n = subset.nextSetBit(0); n >= 0; n = subset.nextSetBit(n + 1)) {
+				names.add(nodes.get(n).getName());
+			}
+			expected[b] = names.toArray(new String[0]);
+		}
+
+		return new OrderDFA(symbols, block[0], delta, acceptingMin, expected);
+	}
+
+	private static int countBlocks(int[] block) {
+		BitSet blocks = new BitSet();
+		for (int b : block) {
+			blocks.set(b);
+		}
+		return blocks.cardinality();
+	}
+
+	/**
+	 * @return the state before any op has been called
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the symbol of an op.
+	 *
+	 * @param op name of the op
+	 * @return the symbol, or ERROR if the op does not occur in the order
+	 */
+	public int getSymbol(String op) {
+		Integer symbol = symbols.get(op);
+		return symbol == null ? ERROR : symbol;
+	}
+
+	/**
+	 * Returns the state after calling the op with the given symbol in the given state.
+	 *
+	 * @param state
+	 * @param symbol
+	 * @return the next state, or ERROR if the op is not allowed in this state
+	 */
+	public int step(int state, int symbol) {
+		if (symbol == ERROR) {
+			return ERROR;
+		}
+		return delta[state][symbol];
+	}
+
+	/**
+	 * @param state
+	 * @return true, if the order may correctly end in this state
+	 */
+	public boolean isAccepting(int state) {
+		return accepting[state];
+	}
+
+	/**
+	 * Returns the sorted names (<code>base.op</code>) of the FSM nodes which may follow in this state.
+	 *
+	 * @param state
+	 * @return
+	 */
+	public String[] getExpected(int state) {
+		return expected[state];
+	}
+
+	public int getNumberOfStates() {
+		return delta.length;
+	}
+}
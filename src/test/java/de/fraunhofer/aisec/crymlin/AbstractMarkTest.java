@@ -28,6 +28,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -38,6 +39,9 @@ public abstract class AbstractMarkTest {
 	protected AnalysisServer server;
 	protected AnalysisContext ctx;
 	protected TypestateMode tsMode = TypestateMode.NFA;
+	// additional settings of the analysis server, e.g. budgets
+	protected Consumer<ServerConfiguration.Builder> configure = builder -> {
+	};
 
 	Set<Finding> performTest(String sourceFileName) throws Exception {
 		return performTest(sourceFileName, null);
@@ -87,15 +91,15 @@ public abstract class AbstractMarkTest {
 		}
 
 		// Start an analysis server
+		ServerConfiguration.Builder config = ServerConfiguration.builder()
+				.launchConsole(false)
+				.launchLsp(false)
+				.typestateAnalysis(tsMode)
+				.markFiles(markDirPath)
+				.disableOverflow(true);
+		configure.accept(config);
 		server = AnalysisServer.builder()
-				.config(
-					ServerConfiguration.builder()
-							.launchConsole(false)
-							.launchLsp(false)
-							.typestateAnalysis(tsMode)
-							.markFiles(markDirPath)
-							.disableOverflow(true)
-							.build())
+				.config(config.build())
 				.build();
 		server.start();
 
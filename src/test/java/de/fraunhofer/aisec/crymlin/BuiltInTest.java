@@ -5,15 +5,23 @@ import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.ListValue;
+import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
 import de.fraunhofer.aisec.crymlin.builtin.BuiltinHelper;
 import de.fraunhofer.aisec.crymlin.builtin.InvalidArgumentException;
+import de.fraunhofer.aisec.crymlin.builtin.ReceivesValueFrom;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.structure.util.detached.DetachedVertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Set;
 
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.DFG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
@@ -160,6 +168,45 @@ public class BuiltInTest extends AbstractMarkTest {
 		}
 	}
 
+	@Test
+	public void receivesValueFrom() {
+		Graph g = TinkerGraph.open();
+		Vertex source = g.addVertex();
+		Vertex intermediate = g.addVertex();
+		Vertex target = g.addVertex();
+		Vertex unrelated = g.addVertex();
+		source.addEdge(DFG, intermediate);
+		intermediate.addEdge(DFG, target);
+
+		MarkContextHolder holder = new MarkContextHolder();
+		ReceivesValueFrom builtin = new ReceivesValueFrom();
+
+		// two DFG edges from source to target
+		assertEquals(true, builtin.execute(null, arguments(target, source), 0, holder, null).getValue());
+		// flows are directed
+		assertEquals(false, builtin.execute(null, arguments(source, target), 0, holder, null).getValue());
+		assertEquals(false, builtin.execute(null, arguments(target, unrelated), 0, holder, null).getValue());
+
+		// unresolved arguments are errors
+		ListValue unresolved = new ListValue();
+		unresolved.add(ConstantValue.of(1));
+		unresolved.add(ConstantValue.of(2));
+		assertTrue(builtin.execute(null, unresolved, 0, holder, null) instanceof ErrorValue);
+	}
+
+	/**
+	 * Arguments of a builtin call, each resolved to the given vertex.
+	 */
+	private static ListValue arguments(Vertex... vertices) {
+		ListValue lv = new ListValue();
+		for (Vertex v : vertices) {
+			ConstantValue cv = ConstantValue.of(v.id());
+			cv.addResponsibleVertices(v);
+			lv.add(cv);
+		}
+		return lv;
+	}
+
 	@Test
 	public void verifyArgumentTypesOrThrow() throws InvalidArgumentException {
 		ListValue lv = new ListValue();
@@ -1,13 +1,38 @@
 
 package de.fraunhofer.aisec.crymlin;
 
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.DFG;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.EOG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
 import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.Literal;
+import de.fraunhofer.aisec.crymlin.connectors.db.AstIndex;
+import de.fraunhofer.aisec.crymlin.connectors.db.DfgReachability;
+import de.fraunhofer.aisec.crymlin.connectors.db.EogReachability;
+import de.fraunhofer.aisec.crymlin.connectors.db.GraphCaches;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
+import de.fraunhofer.aisec.crymlin.connectors.db.VertexIndex;
+import de.fraunhofer.aisec.crymlin.dsl.CrymlinGraphStep;
+import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 import org.junit.jupiter.api.Test;
 
 class CrymlinQueryWrapperTest {
@@ -33,4 +58,182 @@ class CrymlinQueryWrapperTest {
 		assertTrue(locWin.getPath().contains("Users\\test\\Documents\\Some Path\\test"));
 		assertTrue(locLinux.getPath().contains("Users/test/Documents/Some Path/test"));
 	}
+
+	/** Reachability labels must agree with the EOG, including loops and vertices outside of the function. */
+	@Test
+	void testEogReachability() {
+		Graph g = TinkerGraph.open();
+		Vertex f = g.addVertex("FunctionDeclaration");
+		Vertex a = g.addVertex("Statement");
+		Vertex loopHead = g.addVertex("Statement");
+		Vertex loopBody = g.addVertex("Statement");
+		Vertex exit = g.addVertex("Statement");
+		Vertex unrelated = g.addVertex("Statement");
+		f.addEdge(EOG, a);
+		a.addEdge(EOG, loopHead);
+		loopHead.addEdge(EOG, loopBody);
+		loopBody.addEdge(EOG, loopHead);
+		loopHead.addEdge(EOG, exit);
+
+		EogReachability reachability = EogReachability.build(f);
+		assertEquals(Optional.of(true), reachability.isReachable(a, exit));
+		assertEquals(Optional.of(true), reachability.isReachable(loopBody, loopBody));
+		assertEquals(Optional.of(true), reachability.isReachable(loopBody, loopHead));
+		assertEquals(Optional.of(false), reachability.isReachable(exit, a));
+		assertEquals(Optional.of(false), reachability.isReachable(a, a));
+		assertEquals(Optional.of(false), reachability.isReachable(a, unrelated));
+		assertEquals(Optional.empty(), reachability.isReachable(unrelated, a));
+	}
+
+	/** The enclosing functions answered by the AST index must be the ones found by climbing the AST. */
+	@Test
+	void testAstIndex() {
+		Graph g = TinkerGraph.open();
+		Vertex tu = g.addVertex("TranslationUnitDeclaration");
+		Vertex record = g.addVertex("RecordDeclaration");
+		Vertex method = g.addVertex("MethodDeclaration");
+		Vertex body = g.addVertex("CompoundStatement");
+		Vertex call = g.addVertex("CallExpression");
+		Vertex lambda = g.addVertex("FunctionDeclaration");
+		Vertex lambdaBody = g.addVertex("CompoundStatement");
+		Vertex function = g.addVertex("FunctionDeclaration");
+		Vertex declaration = g.addVertex("DeclarationStatement");
+		Vertex global = g.addVertex("VariableDeclaration");
+		ast(tu, record);
+		ast(record, method);
+		ast(method, body);
+		ast(body, call);
+		ast(body, lambda);
+		ast(lambda, lambdaBody);
+		ast(tu, function);
+		ast(function, declaration);
+		ast(tu, global);
+		// edges of other sub-graphs do not make a vertex part of a function
+		method.addEdge(EOG, global);
+
+		List<Vertex> vertices = List.of(tu, record, method, body, call, lambda, lambdaBody, function, declaration, global);
+		CrymlinTraversalSource t = g.traversal(CrymlinTraversalSource.class);
+		Map<Vertex, Optional<Vertex>> climbed = new HashMap<>();
+		for (Vertex v : vertices) {
+			climbed.put(v, CrymlinQueryWrapper.getContainingFunction(v, t));
+		}
+
+		AstIndex.build(g);
+		assertNotNull(AstIndex.get(g));
+		for (Vertex v : vertices) {
+			assertTrue(AstIndex.get(g).contains(v.id()));
+			assertEquals(climbed.get(v), CrymlinQueryWrapper.getContainingFunction(v, t), v.label() + " " + v.id());
+		}
+		assertEquals(Optional.of(method), climbed.get(call));
+		assertEquals(Optional.of(lambda), climbed.get(lambdaBody));
+		assertEquals(Optional.of(method), climbed.get(lambda));
+		assertEquals(Optional.empty(), climbed.get(global));
+
+		// the index is dropped with the other caches of the graph
+		GraphCaches.clear(g);
+		assertNull(AstIndex.get(g));
+	}
+
+	private static void ast(Vertex parent, Vertex child) {
+		parent.addEdge("AST", child, "sub-graph", "AST");
+	}
+
+	/** Data flows must be followed over more than one DFG edge. */
+	@Test
+	void testDfgReachability() {
+		Graph g = TinkerGraph.open();
+		Vertex source = g.addVertex("Literal");
+		Vertex declaration = g.addVertex("VariableDeclaration");
+		Vertex reference = g.addVertex("DeclaredReferenceExpression");
+		Vertex unrelated = g.addVertex("Literal");
+		source.addEdge(DFG, declaration);
+		declaration.addEdge(DFG, reference);
+
+		DfgReachability dfg = DfgReachability.of(g);
+		// only computing a closure visits vertices
+		AtomicLong visited = new AtomicLong();
+		assertTrue(dfg.receivesValueFrom(reference, source, visited::addAndGet));
+		assertEquals(3, visited.get());
+		assertTrue(dfg.receivesValueFrom(reference, declaration, visited::addAndGet));
+		assertEquals(3, visited.get());
+
+		assertTrue(dfg.receivesValueFrom(reference, source));
+		assertTrue(dfg.receivesValueFrom(reference, declaration));
+		assertFalse(dfg.receivesValueFrom(reference, reference));
+		assertFalse(dfg.receivesValueFrom(reference, unrelated));
+		assertFalse(dfg.receivesValueFrom(source, reference));
+	}
+
+	/** Start steps answered from the vertex index must return the same vertices as a scan of the graph. */
+	@Test
+	void testVertexIndex() {
+		var db = new OverflowDatabase(ServerConfiguration.builder().disableOverflow(true).build());
+		db.connect();
+		Node a = new Node();
+		a.setName("a");
+		Node b = new Node();
+		b.setName("b");
+		Literal<Integer> literal = new Literal<>();
+		literal.setName("a");
+		db.createVertex(a);
+		db.createVertex(b);
+		db.createVertex(literal);
+
+		try (TraversalConnection conn = new TraversalConnection(db)) {
+			CrymlinTraversalSource t = conn.getCrymlinTraversal();
+			Set<Vertex> scanned = t.V().hasLabel(Node.class.getSimpleName()).has("name", "a").toSet();
+
+			VertexIndex.build(db.getGraph());
+			assertNotNull(VertexIndex.get(db.getGraph()));
+			Set<Vertex> indexed = t.V().hasLabel(Node.class.getSimpleName()).has("name", "a").toSet();
+			assertEquals(1, indexed.size());
+			assertEquals(scanned, indexed);
+			assertEquals(2, t.V().has("name", "a").toList().size());
+			assertEquals(2, t.V().hasLabel(Node.class.getSimpleName(), Literal.class.getSimpleName(), Node.class.getSimpleName()).has("name", "a").toList().size());
+
+			// the filters are answered by the start step
+			Traversal.Admin<?, ?> compiled = t.V().hasLabel(Node.class.getSimpleName()).has("name", "a").asAdmin();
+			compiled.applyStrategies();
+			assertTrue(compiled.getStartStep() instanceof CrymlinGraphStep);
+			assertEquals(2, ((CrymlinGraphStep<?>) compiled.getStartStep()).getHasContainers().size());
+
+			// adding vertices drops the index
+			db.createVertex(new Node());
+			assertNull(VertexIndex.get(db.getGraph()));
+		}
+
+		// closing the database drops all caches of its graph
+		Graph graph = db.getGraph();
+		VertexIndex.build(graph);
+		DfgReachability.of(graph);
+		db.close();
+		assertNull(VertexIndex.get(graph));
+		assertNull(GraphCaches.get(graph, DfgReachability.class));
+	}
+
+	@Test
+	void testStartStepStrategyOrder() {
+		Graph graph = TinkerGraph.open();
+		graph.addVertex(T.label, "Node", "name", "a");
+		graph.addVertex(T.label, "Node", "name", "b");
+		graph.addVertex(T.label, "Literal", "name", "a", "other", "x");
+		VertexIndex.build(graph);
+		CrymlinTraversalSource t = graph.traversal(CrymlinTraversalSource.class);
+
+		// not replaced by the start step of TinkerGraph
+		Traversal.Admin<?, ?> compiled = t.V().hasLabel("Node").has("name", "a").asAdmin();
+		compiled.applyStrategies();
+		assertTrue(compiled.getStartStep() instanceof CrymlinGraphStep);
+		assertEquals(1, t.V().hasLabel("Node").has("name", "a").toList().size());
+
+		// counting must not ignore the folded filters
+		assertEquals(1L, t.V().hasLabel("Node").has("name", "a").count().next());
+		assertEquals(3L, t.V().count().next());
+
+		// a filter on a property without statistics does not take precedence over the label
+		assertEquals(1, t.V().has("other", "x").hasLabel("Literal").toList().size());
+		assertEquals(0, t.V().has("other", "x").hasLabel("Node").toList().size());
+
+		GraphCaches.clear(graph);
+	}
 }
@@ -9,6 +9,7 @@ import de.fraunhofer.aisec.markmodel.Mark;
 import de.fraunhofer.aisec.markmodel.MarkModelLoader;
 import de.fraunhofer.aisec.markmodel.fsm.FSM;
 import de.fraunhofer.aisec.markmodel.fsm.Node;
+import de.fraunhofer.aisec.markmodel.fsm.OrderDFA;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -125,6 +126,36 @@ class FSMTest {
 			fsm.toString());
 	}
 
+	@Test
+	void testOrderDFA() {
+		OrderDFA dfa = OrderDFA.of(load("UseOfBotan_CipherMode"));
+
+		// create, init, start, {finish, process}, {END, reset, start}, {END} and the dead state after END
+		assertEquals(7, dfa.getNumberOfStates());
+		assertFalse(dfa.isAccepting(dfa.getStart()));
+		assertArrayEquals(new String[] { "cm.create" }, dfa.getExpected(dfa.getStart()));
+
+		int state = run(dfa, "create", "init", "start", "process", "process", "finish");
+		assertTrue(dfa.isAccepting(state));
+		assertArrayEquals(new String[] { "END", "cm.reset", "cm.start" }, dfa.getExpected(state));
+		assertTrue(dfa.isAccepting(run(dfa, "create", "init", "start", "finish", "start", "finish", "reset")));
+		assertFalse(dfa.isAccepting(run(dfa, "create", "init", "start", "process")));
+
+		assertEquals(OrderDFA.ERROR, run(dfa, "create", "start"));
+		assertEquals(OrderDFA.ERROR, dfa.getSymbol("unknown"));
+	}
+
+	private int run(OrderDFA dfa, String... ops) {
+		int state = dfa.getStart();
+		for (String op : ops) {
+			state = dfa.step(state, dfa.getSymbol(op));
+			if (state == OrderDFA.ERROR) {
+				break;
+			}
+		}
+		return state;
+	}
+
 	@Test
 	void testSimpleUseOfBotan_CipherMode() {
 		FSM fsm = load("SimpleUseOfBotan_CipherMode");
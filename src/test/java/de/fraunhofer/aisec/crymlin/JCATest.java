@@ -2,10 +2,24 @@
 package de.fraunhofer.aisec.crymlin;
 
 import de.fraunhofer.aisec.analysis.structures.Finding;
+import de.fraunhofer.aisec.analysis.utils.Utils;
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.ConstructExpression;
+import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
+import de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration;
+import de.fraunhofer.aisec.mark.markDsl.OpStatement;
+import de.fraunhofer.aisec.markmodel.MEntity;
+import de.fraunhofer.aisec.markmodel.MOp;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class JCATest extends AbstractMarkTest {
 
 	@Test
@@ -278,4 +292,32 @@ public class JCATest extends AbstractMarkTest {
 		);
 	}
 
+
+	@Test
+	public void testBatchLookupOfOpStatements() throws Exception {
+		performTest("java/jca/BlockCipherTest.java", "../../src/dist/mark/bouncycastle");
+
+		List<FunctionDeclaration> calls = new ArrayList<>();
+		for (MEntity entity : server.getMarkModel().getEntities()) {
+			for (MOp op : entity.getOps()) {
+				for (OpStatement opStmt : op.getStatements()) {
+					calls.add(opStmt.getCall());
+				}
+			}
+		}
+
+		try (TraversalConnection conn = new TraversalConnection(ctx.getDatabase())) {
+			Map<FunctionDeclaration, Set<Vertex>> batch = CrymlinQueryWrapper.getVerticesForFunctionDeclarations(ctx.getDatabase(), calls,
+				conn.getCrymlinTraversal());
+
+			// same results as one lookup per op statement, including constructors matched by the name of their type
+			boolean ctorFound = false;
+			for (FunctionDeclaration call : calls) {
+				Set<Vertex> single = CrymlinQueryWrapper.getVerticesForFunctionDeclaration(ctx.getDatabase(), call, conn.getCrymlinTraversal());
+				assertEquals(single, batch.get(call), call.getName());
+				ctorFound |= single.stream().anyMatch(v -> Utils.hasLabel(v, ConstructExpression.class));
+			}
+			assertTrue(ctorFound);
+		}
+	}
 }
@@ -4,6 +4,8 @@ package de.fraunhofer.aisec.crymlin;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -28,6 +30,24 @@ class OrderTest extends AbstractMarkTest {
 		check(findings);
 	}
 
+	@Test
+	void checkCppParallel() throws Exception {
+		List<String> sequential = performTest("unittests/order.cpp", "unittests/order.mark").stream()
+				.map(Finding::toString)
+				.sorted()
+				.collect(Collectors.toList());
+
+		// contexts of different functions are evaluated by different workers
+		configure = builder -> builder.orderEvaluationThreads(4);
+		List<String> parallel = performTest("unittests/order.cpp", "unittests/order.mark").stream()
+				.map(Finding::toString)
+				.sorted()
+				.collect(Collectors.toList());
+
+		assertEquals(sequential, parallel);
+		check(new HashSet<>(parallel));
+	}
+
 	private void check(Set<String> findings) {
 
 		assertTrue(
@@ -0,0 +1,31 @@
+package de.fraunhofer.aisec.crymlin;
+
+import de.fraunhofer.aisec.analysis.structures.RuleProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the selection and parallel evaluation of rules.
+ */
+class RuleSchedulerTest extends AbstractMarkTest {
+
+	@Test
+	void testRuleWithoutCandidatesIsSkipped() throws Exception {
+		performTest("unittests/wpds-ok1.cpp", "unittests/schedule.mark");
+
+		// a profile is created for each rule whose instances were collected and evaluated
+		assertEquals(Set.of("UseOfBotan2_CipherMode"), getEvaluatedRules());
+		assertTrue(ctx.getFindings().stream().noneMatch(f -> f.getLogMsg().contains("CloseFoo")));
+	}
+
+	private Set<String> getEvaluatedRules() {
+		return ctx.getRuleProfiles()
+				.stream()
+				.map(RuleProfile::getRuleName)
+				.collect(Collectors.toSet());
+	}
+}
@@ -0,0 +1,177 @@
+package de.fraunhofer.aisec.crymlin;
+
+import de.fraunhofer.aisec.analysis.scp.SimpleConstantResolver;
+import de.fraunhofer.aisec.analysis.server.AnalysisServer;
+import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
+import de.fraunhofer.aisec.analysis.structures.ConstantValue;
+import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
+import de.fraunhofer.aisec.cpg.TranslationConfiguration;
+import de.fraunhofer.aisec.cpg.TranslationManager;
+import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.BinaryOperator;
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.DeclaredReferenceExpression;
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.Literal;
+import de.fraunhofer.aisec.crymlin.connectors.db.Database;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.EOG;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.REFERS_TO;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the resolution of constant values of variables against a backward walk along the EOG from each reference.
+ */
+class SimpleConstantResolverTest {
+	static AnalysisContext result;
+	static AnalysisServer server;
+
+	@BeforeAll
+	static void setup() throws Exception {
+		ClassLoader classLoader = SimpleConstantResolverTest.class.getClassLoader();
+
+		URL resource = classLoader.getResource("unittests/constants.cpp");
+		assertNotNull(resource);
+		File cppFile = new File(resource.getFile());
+		assertNotNull(cppFile);
+
+		// Start an analysis server
+		server = AnalysisServer.builder().config(ServerConfiguration.builder().launchConsole(false).launchLsp(false).build()).build();
+		server.start();
+
+		// Start the analysis
+		TranslationManager translationManager = TranslationManager.builder()
+				.config(
+					TranslationConfiguration.builder().debugParser(true).failOnError(false).codeInNodes(true).defaultPasses().sourceLocations(cppFile).build())
+				.build();
+		CompletableFuture<AnalysisContext> analyze = server.analyze(translationManager);
+		try {
+			result = analyze.get(5, TimeUnit.MINUTES);
+		}
+		catch (TimeoutException t) {
+			analyze.cancel(true);
+			throw t;
+		}
+		assertNotNull(result);
+	}
+
+	@AfterAll
+	static void teardown() {
+		// Stop the analysis server
+		server.stop();
+	}
+
+	/**
+	 * Each reference to a variable in branches, loops and shadowing blocks resolves to the value of one of the closest assignments found by
+	 * walking the EOG backwards, or to the initializer if there is none.
+	 */
+	@Test
+	void testReachingAssignmentsAgreeWithBackwardWalk() {
+		Database<Node> db = result.getDatabase();
+		SimpleConstantResolver resolver = new SimpleConstantResolver(db);
+
+		List<Vertex> references = db.getGraph().traversal().V().hasLabel(DeclaredReferenceExpression.class.getSimpleName()).toList();
+		Set<Integer> resolved = new HashSet<>();
+		int compared = 0;
+		for (Vertex reference : references) {
+			Iterator<Vertex> declarations = reference.vertices(Direction.OUT, REFERS_TO);
+			if (!declarations.hasNext()) {
+				continue;
+			}
+			Vertex declaration = declarations.next();
+
+			Set<Optional<Object>> expected = new HashSet<>();
+			for (Vertex definition : walkBackwards(declaration, reference)) {
+				expected.add(getLiteralValue(definition, definition.equals(declaration) ? "INITIALIZER" : "RHS"));
+			}
+
+			Set<ConstantValue> values = resolver.resolveConstantValues((DeclaredReferenceExpression) db.vertexToNode(reference));
+			assertTrue(values.size() <= 1);
+			Optional<Object> actual = values.stream().findFirst().map(ConstantValue::getValue);
+			assertTrue(expected.contains(actual),
+				"Value of " + reference.property("code").orElse(null) + " is " + actual + ", expected one of " + expected);
+
+			actual.filter(Number.class::isInstance).map(v -> ((Number) v).intValue()).ifPresent(resolved::add);
+			compared++;
+		}
+
+		assertTrue(compared > 0);
+		// straight-line code, shadowing declaration and the outer variable after the block, parameter
+		assertTrue(resolved.containsAll(Set.of(1, 7, 8, 9, 10)), "Resolved values: " + resolved);
+	}
+
+	/**
+	 * Walks the EOG backwards from a reference, level by level, as the resolver did before reaching assignments were cached. The walk does not
+	 * pass the declaration of the variable.
+	 *
+	 * @return the assignments closest to the reference, or the declaration if there is no assignment on the way
+	 */
+	private static Set<Vertex> walkBackwards(Vertex declaration, Vertex reference) {
+		Set<Vertex> seen = new HashSet<>();
+		Set<Vertex> workList = Set.of(reference);
+		while (!workList.isEmpty()) {
+			Set<Vertex> assignments = new HashSet<>();
+			Set<Vertex> nextWorkList = new HashSet<>();
+			for (Vertex v : workList) {
+				if (!seen.add(v)) {
+					continue;
+				}
+				if (isAssignmentTo(v, declaration)) {
+					assignments.add(v);
+				} else if (!v.equals(declaration)) {
+					Iterator<Vertex> predecessors = v.vertices(Direction.IN, EOG);
+					while (predecessors.hasNext()) {
+						Vertex predecessor = predecessors.next();
+						if (!seen.contains(predecessor)) {
+							nextWorkList.add(predecessor);
+						}
+					}
+				}
+			}
+			if (!assignments.isEmpty()) {
+				return assignments;
+			}
+			workList = nextWorkList;
+		}
+		return Set.of(declaration);
+	}
+
+	private static boolean isAssignmentTo(Vertex v, Vertex declaration) {
+		if (!v.label().contains(BinaryOperator.class.getSimpleName()) || !"=".equals(v.property("operatorCode").orElse(null))) {
+			return false;
+		}
+		Iterator<Vertex> lhs = v.vertices(Direction.OUT, "LHS");
+		if (!lhs.hasNext()) {
+			return false;
+		}
+		Iterator<Vertex> assignees = lhs.next().vertices(Direction.OUT, REFERS_TO);
+		return assignees.hasNext() && assignees.next().equals(declaration);
+	}
+
+	private static Optional<Object> getLiteralValue(Vertex definition, String edge) {
+		Iterator<Vertex> values = definition.vertices(Direction.OUT, edge);
+		if (!values.hasNext()) {
+			return Optional.empty();
+		}
+		Vertex value = values.next();
+		if (!value.label().equals(Literal.class.getSimpleName())) {
+			return Optional.empty();
+		}
+		return value.property("value").isPresent() ? Optional.of(value.value("value")) : Optional.empty();
+	}
+}
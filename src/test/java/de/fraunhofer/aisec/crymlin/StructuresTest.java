@@ -1,10 +1,17 @@
 
 package de.fraunhofer.aisec.crymlin;
 
+import de.fraunhofer.aisec.analysis.structures.CPGInstanceContext;
+import de.fraunhofer.aisec.analysis.structures.CPGVertexWithValue;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
+import de.fraunhofer.aisec.analysis.structures.MarkContext;
+import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class StructuresTest {
@@ -26,4 +33,92 @@ public class StructuresTest {
 		assertNotEquals(oneCV, new Object());
 	}
 
+	@Test
+	public void testMarkContextHolderDeduplicationAndLimit() {
+		MarkContextHolder holder = new MarkContextHolder(3);
+		holder.addInitialInstanceContext(new CPGInstanceContext());
+
+		List<CPGVertexWithValue> values = List.of(
+			new CPGVertexWithValue(null, ConstantValue.of(1)),
+			new CPGVertexWithValue(null, ConstantValue.of(1)),
+			new CPGVertexWithValue(null, ConstantValue.of(2)),
+			new CPGVertexWithValue(null, ConstantValue.of(3)),
+			new CPGVertexWithValue(null, ConstantValue.of(4)));
+		holder.addResolvedOperands("t.foo", Map.of(0, values));
+
+		assertEquals(1, holder.getDeduplicatedContexts());
+		assertEquals(3, holder.getAllContexts().size());
+		assertTrue(holder.isFanOutLimitReached());
+		assertEquals(ConstantValue.of(1), holder.getContext(0).getOperand("t.foo").getValue());
+	}
+
+	@Test
+	public void testMarkContextHolderWithoutLimit() {
+		MarkContextHolder holder = new MarkContextHolder(0);
+		assertTrue(holder.addInitialInstanceContext(new CPGInstanceContext()));
+		assertTrue(holder.addInitialInstanceContext(new CPGInstanceContext()));
+
+		List<CPGVertexWithValue> values = List.of(
+			new CPGVertexWithValue(null, ConstantValue.of(1)),
+			new CPGVertexWithValue(null, ConstantValue.of(2)),
+			new CPGVertexWithValue(null, ConstantValue.of(3)));
+		holder.addResolvedOperands("t.foo", Map.of(0, values, 1, values));
+
+		assertFalse(holder.isFanOutLimitReached());
+		// values are only merged within the copies of one context
+		assertEquals(6, holder.getAllContexts().size());
+		assertEquals(0, holder.getDeduplicatedContexts());
+	}
+
+	@Test
+	public void testMarkContextCopiesShareOperands() {
+		MarkContext original = new MarkContext();
+		original.setOperand("t.foo", new CPGVertexWithValue(null, ConstantValue.of(1)));
+
+		MarkContext copy = new MarkContext(original);
+		copy.setOperand("t.foo", new CPGVertexWithValue(null, ConstantValue.of(2)));
+		copy.setOperand("t.bar", new CPGVertexWithValue(null, ConstantValue.of(3)));
+		original.setOperand("t.baz", new CPGVertexWithValue(null, ConstantValue.of(4)));
+
+		assertEquals(ConstantValue.of(1), original.getOperand("t.foo").getValue());
+		assertNull(original.getOperand("t.bar"));
+		assertEquals(ConstantValue.of(2), copy.getOperand("t.foo").getValue());
+		assertNull(copy.getOperand("t.baz"));
+		assertEquals(2, copy.getOperands().size());
+
+		// operands set in any order are found, replacing a value in a copy does not affect the original
+		MarkContext many = new MarkContext();
+		for (String operand : List.of("t.d", "t.a", "t.c", "t.e", "t.b")) {
+			many.setOperand(operand, new CPGVertexWithValue(null, ConstantValue.of(operand)));
+		}
+		MarkContext manyCopy = new MarkContext(many);
+		manyCopy.setOperand("t.c", new CPGVertexWithValue(null, ConstantValue.of("changed")));
+		for (String operand : List.of("t.a", "t.b", "t.c", "t.d", "t.e")) {
+			assertEquals(ConstantValue.of(operand), many.getOperand(operand).getValue());
+		}
+		assertEquals(ConstantValue.of("changed"), manyCopy.getOperand("t.c").getValue());
+		assertEquals(ConstantValue.of("t.e"), manyCopy.getOperand("t.e").getValue());
+		assertNull(many.getOperand("t.f"));
+		assertEquals(5, manyCopy.getOperands().size());
+	}
+
+	@Test
+	public void testMarkContextHolderResultOfOrigin() {
+		MarkContextHolder holder = new MarkContextHolder();
+		holder.addInitialInstanceContext(new CPGInstanceContext());
+		holder.addResolvedOperands("t.foo", Map.of(0, List.of(
+			new CPGVertexWithValue(null, ConstantValue.of(1)),
+			new CPGVertexWithValue(null, ConstantValue.of(2)))));
+		holder.addResolvedOperands("t.bar", Map.of(
+			0, List.of(new CPGVertexWithValue(null, ConstantValue.of(3))),
+			1, List.of(
+				new CPGVertexWithValue(null, ConstantValue.of(4)),
+				new CPGVertexWithValue(null, ConstantValue.of(5)))));
+
+		// context 2 was copied from 1, which was copied from 0
+		assertEquals(3, holder.getAllContexts().size());
+		assertEquals("left", holder.getResultOfContextOrOrigin(Map.of(0, "left"), 2));
+		assertEquals("one", holder.getResultOfContextOrOrigin(Map.of(0, "left", 1, "one"), 2));
+		assertNull(holder.getResultOfContextOrOrigin(Map.of(0, "left"), 3));
+	}
 }
@@ -3,8 +3,12 @@ package de.fraunhofer.aisec.crymlin;
 
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.TypestateMode;
+import de.fraunhofer.aisec.analysis.wpds.CallGraph;
+import de.fraunhofer.aisec.analysis.wpds.FunctionRules;
 import de.fraunhofer.aisec.analysis.wpds.NFA;
 import de.fraunhofer.aisec.analysis.wpds.NFATransition;
+import de.fraunhofer.aisec.analysis.wpds.TypestateWeight;
+import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
 import de.fraunhofer.aisec.mark.XtextParser;
 import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
 import de.fraunhofer.aisec.markmodel.fsm.FSM;
@@ -15,7 +19,9 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -103,6 +109,47 @@ class WpdsTest extends AbstractMarkTest {
 		assertEquals(7, findings.stream().filter(Finding::isProblem).count());
 	}
 
+	/**
+	 * Typestate transitions are triggered by the call sites resolved for the ops of the rule (see TransitionIndex). Compares the typestate
+	 * findings for the Botan Cipher_Mode example with those of the NFA-based evaluation: both must agree on which functions use the cipher
+	 * correctly.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testBotanCipherModeFindingsAgreeWithNfa() throws Exception {
+		Set<String> wpdsFunctions = getFunctionsWithProblems(performTest("unittests/order.cpp", "unittests/order.mark"));
+		tsMode = TypestateMode.NFA;
+		Set<String> nfaFunctions = getFunctionsWithProblems(performTest("unittests/order.cpp", "unittests/order.mark"));
+		tsMode = TypestateMode.WPDS;
+
+		assertFalse(wpdsFunctions.isEmpty());
+		assertFalse(nfaFunctions.contains("ok"), nfaFunctions.toString());
+		assertFalse(wpdsFunctions.contains("ok"), wpdsFunctions.toString());
+		assertTrue(nfaFunctions.containsAll(wpdsFunctions), "WPDS: " + wpdsFunctions + ", NFA: " + nfaFunctions);
+	}
+
+	/**
+	 * Returns the functions of unittests/order.cpp containing the first line of a problem finding.
+	 */
+	private static Set<String> getFunctionsWithProblems(Set<Finding> findings) {
+		// first line (starting at 0) -> function
+		TreeMap<Integer, String> functions = new TreeMap<>(Map.of(
+			10, "nok1",
+			19, "nok2",
+			25, "nok3",
+			34, "ok",
+			41, "nok4",
+			51, "nok5",
+			63, "nok2_disabled"));
+		return findings.stream()
+				.filter(Finding::isProblem)
+				.map(f -> functions.floorEntry(f.getRegions().get(0).getStartLine()))
+				.filter(Objects::nonNull)
+				.map(Map.Entry::getValue)
+				.collect(Collectors.toSet());
+	}
+
 	@Test
 	void testCppInterprocOk1() throws Exception {
 		@NonNull
@@ -112,6 +159,31 @@ class WpdsTest extends AbstractMarkTest {
 		assertEquals(0, findings.stream().filter(Finding::isProblem).count());
 	}
 
+	@Test
+	void testParallelRuleCreationExceedsBudget() throws Exception {
+		// both functions of the slice are processed by workers, which exceed the budget of the context together
+		configure = builder -> builder.wpdsThreads(2).maxEogNodesPerContext(3);
+		@NonNull
+		Set<Finding> findings = performTest("unittests/orderInterprocOk1.cpp", "unittests/order2.mark");
+
+		assertFalse(findings.isEmpty());
+		assertTrue(findings.stream().allMatch(Finding::isInconclusive), findings.toString());
+		assertEquals(0, findings.stream().filter(Finding::isProblem).count());
+	}
+
+	@Test
+	void testFunctionRulesAreUnique() throws Exception {
+		performTest("unittests/orderInterprocOk1.cpp", "unittests/order2.mark");
+
+		// statements reached from several predecessors must not add the same rule twice
+		Map<Object, FunctionRules> computed = ctx.getWpdsFunctionRules();
+		assertFalse(computed.isEmpty());
+		for (FunctionRules rules : computed.values()) {
+			assertEquals(new HashSet<Object>(rules.getFixedRules()).size(), rules.getFixedRules().size());
+			assertEquals(new HashSet<Object>(rules.getTemplates()).size(), rules.getTemplates().size());
+		}
+	}
+
 	@Test
 	void testWpdsVector() throws Exception {
 
@@ -309,6 +381,67 @@ class WpdsTest extends AbstractMarkTest {
 		assertTrue(startLineNumbers.get(30)); // isProblem
 	}
 
+	/**
+	 * unittests/orderInterprocSlice.cpp is unittests/orderInterprocNOk1.cpp with two additional functions which are not connected to the
+	 * calls of the rule. They are pruned from the WPDS and do not change the findings.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testSliceExcludesUnconnectedFunctions() throws Exception {
+		Set<String> expected = getFindingLines(performTest("unittests/orderInterprocNOk1.cpp", "unittests/order2.mark"));
+		Set<String> actual = getFindingLines(performTest("unittests/orderInterprocSlice.cpp", "unittests/order2.mark"));
+		assertEquals(expected, actual);
+
+		var db = ctx.getDatabase();
+		Object nok1 = getFunctionId("nok1");
+		Object someFunction = getFunctionId("someFunction");
+		Object helper = getFunctionId("helper");
+		Object unrelated = getFunctionId("unrelated");
+
+		assertTrue(ctx.getWpdsFunctionRules().containsKey(nok1));
+		assertTrue(ctx.getWpdsFunctionRules().containsKey(someFunction));
+		assertFalse(ctx.getWpdsFunctionRules().containsKey(helper));
+		assertFalse(ctx.getWpdsFunctionRules().containsKey(unrelated));
+		assertTrue(ctx.getRuleProfiles().stream().mapToLong(p -> p.toJson().getLong("wpdsPrunedFunctions")).sum() >= 2);
+
+		try (TraversalConnection conn = new TraversalConnection(db)) {
+			CallGraph callGraph = CallGraph.build(conn.getCrymlinTraversal());
+
+			assertEquals(Set.of(nok1), callGraph.slice(Set.of(nok1), 0));
+			assertTrue(callGraph.slice(Set.of(nok1), 1).contains(someFunction));
+			Set<Object> unlimited = callGraph.slice(Set.of(nok1), -1);
+			assertFalse(unlimited.contains(helper));
+			assertFalse(unlimited.contains(unrelated));
+			assertEquals(Set.of(unrelated, helper), callGraph.slice(Set.of(unrelated), -1));
+		}
+	}
+
+	@Test
+	void testSliceDepthKeepsFindings() throws Exception {
+		Set<String> unlimited = getFindingLines(performTest("unittests/orderInterprocNOk1.cpp", "unittests/order2.mark"));
+
+		// both functions contain calls of the rule, so the slice of depth 0 contains all functions relevant to the typestate
+		configure = builder -> builder.wpdsSliceDepth(0);
+		Set<String> sliced = getFindingLines(performTest("unittests/orderInterprocNOk1.cpp", "unittests/order2.mark"));
+
+		assertFalse(unlimited.isEmpty());
+		assertEquals(unlimited, sliced);
+	}
+
+	/**
+	 * Returns the first lines of all findings, marked as problem or not.
+	 */
+	private static Set<String> getFindingLines(Set<Finding> findings) {
+		return findings.stream()
+				.map(f -> f.getRegions().get(0).getStartLine() + (f.isProblem() ? " problem" : " ok"))
+				.collect(Collectors.toSet());
+	}
+
+	private Object getFunctionId(String name) {
+		return ctx.getDatabase().getGraph().traversal().V().hasLabel("FunctionDeclaration").has("name", name).next().id();
+	}
+
 	@Test
 	void testJavaMethodArgs() throws Exception {
 		@NonNull
@@ -334,6 +467,56 @@ class WpdsTest extends AbstractMarkTest {
 		assertTrue(startLineNumbers.get(15)); // isProblem
 	}
 
+	@Test
+	void testTypestateWeight() {
+		TypestateWeight.States states = new TypestateWeight.States();
+		Node a = new Node("t", "a");
+		Node b = new Node("t", "b");
+		Node c = new Node("t", "c");
+		TypestateWeight ab = new TypestateWeight(states, Set.of(new NFATransition<>(a, b, "b")));
+		TypestateWeight bc = new TypestateWeight(states, Set.of(new NFATransition<>(b, c, "c")));
+		TypestateWeight ac = new TypestateWeight(states, Set.of(new NFATransition<>(a, c, "c")));
+
+		// extend composes the relations
+		assertEquals(ac, ab.extendWith(bc));
+		assertEquals(TypestateWeight.zero(), bc.extendWith(ab));
+		assertSame(ab, ab.extendWith(TypestateWeight.one()));
+		assertEquals(TypestateWeight.zero(), ab.extendWith(TypestateWeight.zero()));
+
+		// combine is the union of the relations
+		TypestateWeight union = (TypestateWeight) ab.combineWith(bc);
+		assertEquals(new TypestateWeight(states, Set.of(new NFATransition<>(a, b, "b"), new NFATransition<>(b, c, "c"))), union);
+		assertEquals(union, bc.combineWith(ab));
+		assertEquals(union, union.combineWith(ab));
+		assertEquals(2, union.getTransitions().size());
+		assertSame(TypestateWeight.one(), TypestateWeight.one().combineWith(TypestateWeight.one()));
+
+		// a second NFA with the same state names, but different end and error states
+		TypestateWeight.States otherStates = new TypestateWeight.States();
+		Node otherA = new Node("t", "a");
+		Node otherB = new Node("t", "b");
+		otherB.setEnd(true);
+		Node otherC = new Node("t", "c");
+		otherC.setError(true);
+		TypestateWeight otherAb = new TypestateWeight(otherStates, Set.of(new NFATransition<>(otherA, otherB, "b")));
+		TypestateWeight otherBc = new TypestateWeight(otherStates, Set.of(new NFATransition<>(otherB, otherC, "c")));
+
+		NFATransition<Node> otherAc = ((TypestateWeight) otherAb.extendWith(otherBc)).getTransitions().iterator().next();
+		assertTrue(otherAc.getTarget().isError());
+		NFATransition<Node> otherAbTransition = otherAb.getTransitions().iterator().next();
+		assertTrue(otherAbTransition.getTarget().isEnd());
+		assertFalse(otherAbTransition.getTarget().isError());
+
+		// the typestates of the first NFA keep their flags
+		NFATransition<Node> acTransition = ((TypestateWeight) ab.extendWith(bc)).getTransitions().iterator().next();
+		assertFalse(acTransition.getTarget().isError());
+		assertFalse(ab.getTransitions().iterator().next().getTarget().isEnd());
+
+		// weights of different NFAs are not comparable
+		assertNotEquals(ab, otherAb);
+		assertThrows(IllegalArgumentException.class, () -> ab.extendWith(otherBc));
+	}
+
 	@Test
 	void testWpdsOpensslSimplified() throws Exception {
 		@NonNull
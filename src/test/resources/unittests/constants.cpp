@@ -0,0 +1,46 @@
+void use(int i);
+
+void branches(bool b) {
+  int x = 1;
+  use(x);
+  if (b) {
+    x = 2;
+    use(x);
+  } else {
+    x = 3;
+  }
+  use(x);
+}
+
+void loops(int n) {
+  int x = 4;
+  for (int i = 0; i < n; i++) {
+    use(x);
+    x = 5;
+    use(x);
+  }
+  use(x);
+  while (n > 0) {
+    x = 6;
+    n--;
+  }
+  use(x);
+}
+
+void shadowed() {
+  int x = 7;
+  use(x);
+  {
+    int x = 8;
+    use(x);
+    x = 9;
+    use(x);
+  }
+  use(x);
+}
+
+void parameter(int p) {
+  use(p);
+  p = 10;
+  use(p);
+}